@@ -156,9 +156,13 @@ public class GeneratorMainEntry {
 				else
 					lineAngle[n] = r.nextDouble() * Math.PI * (1 - 1 / 1.9)
 							+ Math.PI / 1.9;
+			}
 
-				d = new SensorData(complexRegion, lineGap, lineAngle[n],
-						complexRegion.getWidth(), complexRegion.getHeight());
+			// sensor data of all angles share the decoded regions
+			SensorData[] sensorSets = SensorData.forAngles(complexRegion,
+					lineGap, lineAngle);
+			for (int n = 0; n < lineSet; n++) {
+				d = sensorSets[n];
 				fileName = String.format(
 						fileHead + "-positiveInterval[%d].png", n);
 				d.drawPositiveIntervals(fileName,complexRegion.drawRegion(),false);
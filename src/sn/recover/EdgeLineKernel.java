@@ -0,0 +1,180 @@
+package sn.recover;
+
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+import sn.regiondetect.CrossingParityBuilder;
+import sn.regiondetect.ParallelLines;
+import sn.regiondetect.ProjectedExtentIndex;
+import sn.regiondetect.Region;
+import sn.regiondetect.RegionEdges;
+
+/**
+ * Intersect sensor lines with the straight edges of regions, many edges at a
+ * time, over primitive coordinate arrays.
+ *
+ * The edges of all regions are kept in parallel arrays, the edges of a region
+ * next to each other. Curved edges are flattened into lines within a
+ * flatness given by the caller, so for regions with curves the intervals
+ * only approximate those of the exact build modes. The offsets of the end
+ * points along the normal of the lines are computed once per family of
+ * lines. Testing a line against the edges of a region is then one loop over
+ * the arrays with no branches and no allocation, which computes whether each
+ * edge crosses the line and where; only the crossings are read back.
+ *
+ * @author
+ *
+ */
+public class EdgeLineKernel {
+
+	// edges of all regions
+	private double[] _x0;
+	private double[] _y0;
+	private double[] _x1;
+	private double[] _y1;
+	private int _nEdges;
+
+	// edges of region r are _regionStart[r] to _regionStart[r + 1] - 1
+	private int[] _regionStart;
+	private int[] _layers;
+
+	// lines and the offsets of the end points of each edge
+	private ParallelLines _lines;
+	private double[] _o0;
+	private double[] _o1;
+
+	// results of the edges of one region against one line
+	private double[] _params;
+	private boolean[] _hits;
+
+	/**
+	 * Constructor
+	 *
+	 * @param regions
+	 *            regions in layer order
+	 * @param flatness
+	 *            largest distance in pixels of the lines used instead of a
+	 *            curved edge from the curve
+	 * @throws Exception
+	 */
+	public EdgeLineKernel(Region[] regions, double flatness) throws Exception {
+		if (!(flatness > 0)) {
+			throw new IllegalArgumentException("Flatness " + flatness
+					+ " is not positive");
+		}
+		RegionEdges edges = new RegionEdges(regions);
+		_regionStart = new int[regions.length + 1];
+		_layers = new int[regions.length];
+		_x0 = new double[64];
+		_y0 = new double[64];
+		_x1 = new double[64];
+		_y1 = new double[64];
+		_nEdges = 0;
+
+		int maxEdges = 0;
+		double[] coords = new double[6];
+		for (int r = 0; r < regions.length; r++) {
+			_regionStart[r] = _nEdges;
+			_layers[r] = edges.getLayer(r);
+			for (int e = edges.getFirstEdge(r); e < edges.getEndEdge(r); e++) {
+				PathIterator it = edges.getFlattenedEdge(e, flatness);
+				it.currentSegment(coords);
+				double x0 = coords[0], y0 = coords[1];
+				for (it.next(); !it.isDone(); it.next()) {
+					it.currentSegment(coords);
+					addEdge(x0, y0, coords[0], coords[1]);
+					x0 = coords[0];
+					y0 = coords[1];
+				}
+			}
+			maxEdges = Math.max(maxEdges, _nEdges - _regionStart[r]);
+		}
+		_regionStart[regions.length] = _nEdges;
+
+		_o0 = new double[_nEdges];
+		_o1 = new double[_nEdges];
+		_params = new double[maxEdges];
+		_hits = new boolean[maxEdges];
+	}
+
+	/**
+	 * set the family of lines to intersect, computes the offsets of all edges
+	 *
+	 * @param lines
+	 */
+	public void setLines(ParallelLines lines) {
+		_lines = lines;
+		double sin = lines.getSin(), cos = lines.getCos();
+		for (int e = 0; e < _nEdges; e++) {
+			_o0[e] = _x0[e] * sin - _y0[e] * cos;
+			_o1[e] = _x1[e] * sin - _y1[e] * cos;
+		}
+	}
+
+	/**
+	 * intersect one line with the regions whose projected extent contains it
+	 *
+	 * @param index
+	 *            index of the line, sensor id - 1
+	 * @param extents
+	 *            projected extents of the regions on the lines
+	 * @param builder
+	 *            builder to collect the crossings, reset before use
+	 * @return positive intervals as sorted start/end parameter pairs
+	 */
+	public double[] getLineIntervals(int index, ProjectedExtentIndex extents,
+			CrossingParityBuilder builder) {
+		builder.reset();
+		for (int k = 0; k < extents.getRegionCount(index); k++) {
+			int r = extents.getRegion(index, k);
+			addCrossings(index, r, builder);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * add the crossings of one line with the edges of one region
+	 *
+	 * @param index
+	 *            index of the line
+	 * @param region
+	 *            index of the region
+	 * @param builder
+	 */
+	public void addCrossings(int index, int region, CrossingParityBuilder builder) {
+		int from = _regionStart[region], to = _regionStart[region + 1];
+		double offset = _lines.getOffset(index);
+		double invSin = 1 / _lines.getSin();
+
+		// all edges of the region at once, an end point exactly on the line
+		// counts as below it so every crossing is found once
+		for (int e = from; e < to; e++) {
+			double d0 = _o0[e] - offset;
+			double d1 = _o1[e] - offset;
+			double lambda = d0 / (d0 - d1);
+			_params[e - from] = (_y0[e] + lambda * (_y1[e] - _y0[e])) * invSin;
+			_hits[e - from] = (d0 > 0) != (d1 > 0);
+		}
+
+		for (int k = 0; k < to - from; k++) {
+			if (_hits[k]) {
+				builder.addCrossing(_params[k], region, _layers[region]);
+			}
+		}
+	}
+
+	private void addEdge(double x0, double y0, double x1, double y1) {
+		if (_nEdges == _x0.length) {
+			int capacity = _nEdges * 2;
+			_x0 = Arrays.copyOf(_x0, capacity);
+			_y0 = Arrays.copyOf(_y0, capacity);
+			_x1 = Arrays.copyOf(_x1, capacity);
+			_y1 = Arrays.copyOf(_y1, capacity);
+		}
+		_x0[_nEdges] = x0;
+		_y0[_nEdges] = y0;
+		_x1[_nEdges] = x1;
+		_y1[_nEdges] = y1;
+		_nEdges++;
+	}
+}
@@ -0,0 +1,146 @@
+package sn.recover;
+
+import java.awt.geom.PathIterator;
+
+import sn.regiondetect.ParallelLines;
+import sn.regiondetect.RegionEdges;
+
+/**
+ * A SensorSweep over the straight edges of regions in fixed-point integer
+ * arithmetic.
+ *
+ * Vertices are rounded to 1/2^FRACTION_BITS pixel and the direction of the
+ * sensor lines to 1/2^DIRECTION_BITS, so the offset of a vertex along the
+ * normal of the lines is an exact long, and line i sits at the exact offset
+ * offset0 + i * gap. Which side of a line a vertex is on is an exact integer
+ * comparison, a vertex on a line counts as being on its lower side, so every
+ * crossing is found exactly once without any distance threshold. Only the
+ * parameter of a crossing along its line is converted to double, from exact
+ * long products, so the result is identical on every JVM.
+ *
+ * Straight edges with vertices on the fixed-point grid, such as the integer
+ * vertices of regions, are swept exactly. Curved edges are flattened into
+ * lines first, within a flatness given by the caller, so for regions with
+ * curves the intervals only approximate those of SensorSweep.
+ *
+ * @author
+ *
+ */
+public class FixedPointSweep extends SensorSweep {
+
+	// vertices in 1/256 pixel
+	public static final int FRACTION_BITS = 8;
+	// direction of the lines in 1/2^20
+	public static final int DIRECTION_BITS = 20;
+	// largest absolute coordinate in pixels, keeps every product in a long
+	public static final int MAX_COORDINATE = 4096;
+
+	private long _cos;
+	private long _sin;
+	private long _offset0; // offset of line 0
+	private long _gap; // offset between adjacent lines
+	private double _paramScale; // from fixed-point y to line parameter
+	private double _flatness; // of the lines replacing curved edges
+
+	/**
+	 * Constructor
+	 *
+	 * @param lines
+	 *            the sensor lines
+	 * @param flatness
+	 *            largest distance in pixels of the lines swept instead of a
+	 *            curved edge from the curve
+	 */
+	public FixedPointSweep(ParallelLines lines, double flatness) {
+		super(lines);
+		if (!(flatness > 0)) {
+			throw new IllegalArgumentException("Flatness " + flatness
+					+ " is not positive");
+		}
+		double unit = (double) (1L << (FRACTION_BITS + DIRECTION_BITS));
+		_cos = Math.round(lines.getCos() * (1L << DIRECTION_BITS));
+		_sin = Math.round(lines.getSin() * (1L << DIRECTION_BITS));
+		_offset0 = Math.round(lines.getOffset(0) * unit);
+		_gap = Math.round(lines.getGap() * unit);
+		_paramScale = 1.0 / ((1L << FRACTION_BITS) * lines.getSin());
+		_flatness = flatness;
+	}
+
+	/**
+	 * Collect the crossings of decoded regions with all lines, curved edges
+	 * flattened first
+	 *
+	 * @param edges
+	 */
+	@Override
+	public void addRegions(RegionEdges edges) {
+		double[] coords = new double[6];
+		for (int r = 0; r < edges.getRegionCount(); r++) {
+			startRegion(edges.getLayer(r));
+			for (int e = edges.getFirstEdge(r); e < edges.getEndEdge(r); e++) {
+				PathIterator it = edges.getFlattenedEdge(e, _flatness);
+				it.currentSegment(coords);
+				long x0 = toFixed(coords[0]), y0 = toFixed(coords[1]);
+				for (it.next(); !it.isDone(); it.next()) {
+					it.currentSegment(coords);
+					long x1 = toFixed(coords[0]), y1 = toFixed(coords[1]);
+					addEdgeCrossings(x0, y0, x1, y1);
+					x0 = x1;
+					y0 = y1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * add the crossings of one straight edge with all lines
+	 */
+	private void addEdgeCrossings(long x0, long y0, long x1, long y1) {
+		long o0 = x0 * _sin - y0 * _cos;
+		long o1 = x1 * _sin - y1 * _cos;
+		if (o0 == o1) {
+			// parallel to the lines, crosses none of them
+			return;
+		}
+
+		// the edge crosses line i when exactly one end point is strictly
+		// above it, i.e. for lines at offsets in [min(o0, o1), max(o0, o1))
+		long lo = Math.min(o0, o1) - _offset0;
+		long hi = Math.max(o0, o1) - _offset0;
+		int first = (int) Math.max(0, ceilDiv(lo, _gap));
+		int last = (int) Math.min(getLines().getCount() - 1,
+				ceilDiv(hi, _gap) - 1);
+
+		long dO = o1 - o0;
+		long dy = y1 - y0;
+		for (int i = first; i <= last; i++) {
+			long oi = _offset0 + i * _gap;
+			// y of the crossing is y0 + dy * (oi - o0) / dO, the product is
+			// below 2^63 for coordinates below MAX_COORDINATE
+			double y = y0 + (double) ((oi - o0) * dy) / (double) dO;
+			addCrossing(i, y * _paramScale);
+		}
+	}
+
+	/**
+	 * round a coordinate to fixed point
+	 */
+	private static long toFixed(double v) {
+		if (Math.abs(v) >= MAX_COORDINATE) {
+			throw new IllegalArgumentException("Coordinate " + v
+					+ " out of fixed-point range");
+		}
+		return Math.round(v * (1 << FRACTION_BITS));
+	}
+
+	/**
+	 * integer division rounding towards positive infinity
+	 */
+	private static long ceilDiv(long a, long b) {
+		long q = a / b;
+		if ((a % b != 0) && ((a < 0) == (b < 0))) {
+			q++;
+		}
+		return q;
+	}
+}
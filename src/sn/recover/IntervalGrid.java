@@ -0,0 +1,402 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over the canvas, with the indices of the intervals of a list
+ * bucketed by the cells they cross.
+ *
+ * The grid covers the canvas and the bounding box of the intervals. Each
+ * interval is walked cell by cell along its length and its index is added to
+ * every cell it crosses, a walk through a corner of a cell adds it to both
+ * cells next to the corner. The buckets are kept in one array, ordered by
+ * cell. A segment or point query visits the cells it covers and tests only
+ * the intervals bucketed there, reading their coordinates from primitive
+ * arrays.
+ *
+ * Queries run through a Query, which keeps its own buffers so repeated
+ * queries do not allocate, e.g.
+ *
+ * <pre>
+ * IntervalGrid.Query q = grid.query();
+ * for (int k = 0; k &lt; q.findSegment(x1, y1, x2, y2); k++) {
+ * 	use(intervals.get(q.get(k)));
+ * }
+ * </pre>
+ *
+ * A grid is only read once built, so several threads can query it, each
+ * with its own Query.
+ *
+ * @author
+ *
+ */
+public class IntervalGrid {
+
+	// what a walk over the cells of a segment does in each cell
+	private static final int WALK_COUNT = 0;
+	private static final int WALK_FILL = 1;
+	private static final int WALK_TEST = 2;
+
+	// cells
+	private double _minX;
+	private double _minY;
+	private double _cellSize;
+	private int _nColumns;
+	private int _nRows;
+
+	// intervals of cell c are _cellStart[c] to _cellStart[c + 1] - 1 in
+	// _cellIntervals
+	private int[] _cellStart;
+	private int[] _cellIntervals;
+	private int[] _fillNext; // next free place of each cell while building
+
+	// coordinates of the intervals
+	private int _size;
+	private double[] _x1;
+	private double[] _y1;
+	private double[] _x2;
+	private double[] _y2;
+
+	/**
+	 * Constructor, with a cell size giving about one cell per interval
+	 *
+	 * @param intervals
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 */
+	public IntervalGrid(List<SensorInterval> intervals, int canvasWidth,
+			int canvasHeight) {
+		this(intervals, canvasWidth, canvasHeight, Math.max(1.0, Math
+				.sqrt((double) canvasWidth * canvasHeight
+						/ Math.max(1, intervals.size()))));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param intervals
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param cellSize
+	 *            width and height of a cell
+	 */
+	public IntervalGrid(List<SensorInterval> intervals, int canvasWidth,
+			int canvasHeight, double cellSize) {
+		_size = intervals.size();
+		_x1 = new double[_size];
+		_y1 = new double[_size];
+		_x2 = new double[_size];
+		_y2 = new double[_size];
+		double minX = 0, minY = 0, maxX = canvasWidth, maxY = canvasHeight;
+		for (int i = 0; i < _size; i++) {
+			Line2D l = intervals.get(i).getInterval();
+			_x1[i] = l.getX1();
+			_y1[i] = l.getY1();
+			_x2[i] = l.getX2();
+			_y2[i] = l.getY2();
+			minX = Math.min(minX, Math.min(_x1[i], _x2[i]));
+			minY = Math.min(minY, Math.min(_y1[i], _y2[i]));
+			maxX = Math.max(maxX, Math.max(_x1[i], _x2[i]));
+			maxY = Math.max(maxY, Math.max(_y1[i], _y2[i]));
+		}
+
+		_minX = minX;
+		_minY = minY;
+		_cellSize = cellSize;
+		_nColumns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+		_nRows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+
+		// count the intervals of each cell, then fill the buckets
+		_cellStart = new int[_nColumns * _nRows + 1];
+		for (int i = 0; i < _size; i++) {
+			walk(_x1[i], _y1[i], _x2[i], _y2[i], WALK_COUNT, i, null);
+		}
+		for (int c = 0; c < _nColumns * _nRows; c++) {
+			_cellStart[c + 1] += _cellStart[c];
+		}
+		_cellIntervals = new int[_cellStart[_nColumns * _nRows]];
+		_fillNext = Arrays.copyOf(_cellStart, _nColumns * _nRows);
+		for (int i = 0; i < _size; i++) {
+			walk(_x1[i], _y1[i], _x2[i], _y2[i], WALK_FILL, i, null);
+		}
+		_fillNext = null;
+	}
+
+	/**
+	 * number of intervals in the grid
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _size;
+	}
+
+	public double getCellSize() {
+		return _cellSize;
+	}
+
+	public int getColumnCount() {
+		return _nColumns;
+	}
+
+	public int getRowCount() {
+		return _nRows;
+	}
+
+	/**
+	 * get a new query on the grid, to be reused for any number of queries
+	 *
+	 * @return
+	 */
+	public Query query() {
+		return new Query();
+	}
+
+	/**
+	 * walk the cells a segment crosses
+	 *
+	 * @param action
+	 *            WALK_COUNT, WALK_FILL or WALK_TEST
+	 * @param index
+	 *            interval to add to the cells, for WALK_COUNT and WALK_FILL
+	 * @param query
+	 *            query to add the intersecting intervals to, for WALK_TEST,
+	 *            null to stop at the first one
+	 * @return true if WALK_TEST stopped at an intersecting interval
+	 */
+	private boolean walk(double x1, double y1, double x2, double y2,
+			int action, int index, Query query) {
+		double gx1 = (x1 - _minX) / _cellSize, gy1 = (y1 - _minY) / _cellSize;
+		double gx2 = (x2 - _minX) / _cellSize, gy2 = (y2 - _minY) / _cellSize;
+
+		// clip to the grid, against its left, right, top and bottom side
+		double t0 = 0, t1 = 1;
+		double dx = gx2 - gx1, dy = gy2 - gy1;
+		for (int k = 0; k < 4; k++) {
+			double p = k == 0 ? -dx : k == 1 ? dx : k == 2 ? -dy : dy;
+			double q = k == 0 ? gx1 : k == 1 ? _nColumns - gx1 : k == 2 ? gy1
+					: _nRows - gy1;
+			if (p == 0) {
+				if (q < 0) {
+					return false;
+				}
+			} else if (p < 0) {
+				t0 = Math.max(t0, q / p);
+			} else {
+				t1 = Math.min(t1, q / p);
+			}
+		}
+		if (t0 > t1) {
+			return false;
+		}
+
+		int column = clampColumn((int) Math.floor(gx1 + t0 * dx));
+		int row = clampRow((int) Math.floor(gy1 + t0 * dy));
+		int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1;
+		double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dx);
+		double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dy);
+		double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY
+				: ((dx > 0 ? column + 1 : column) - gx1) / dx;
+		double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY
+				: ((dy > 0 ? row + 1 : row) - gy1) / dy;
+
+		while (true) {
+			if (visit(column, row, x1, y1, x2, y2, action, index, query)) {
+				return true;
+			}
+			double t = Math.min(tMaxX, tMaxY);
+			if (t > t1) {
+				return false;
+			}
+			if (Math.abs(tMaxX - tMaxY) <= 1e-12) {
+				// through a corner, also visit both cells next to it
+				if (inGrid(column + stepX, row)
+						&& visit(column + stepX, row, x1, y1, x2, y2, action,
+								index, query)) {
+					return true;
+				}
+				if (inGrid(column, row + stepY)
+						&& visit(column, row + stepY, x1, y1, x2, y2, action,
+								index, query)) {
+					return true;
+				}
+				column += stepX;
+				row += stepY;
+				tMaxX += tDeltaX;
+				tMaxY += tDeltaY;
+			} else if (tMaxX < tMaxY) {
+				column += stepX;
+				tMaxX += tDeltaX;
+			} else {
+				row += stepY;
+				tMaxY += tDeltaY;
+			}
+			if (!inGrid(column, row)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * do the action of a walk in one cell
+	 */
+	private boolean visit(int column, int row, double x1, double y1,
+			double x2, double y2, int action, int index, Query query) {
+		int cell = row * _nColumns + column;
+		if (action == WALK_COUNT) {
+			_cellStart[cell + 1]++;
+			return false;
+		}
+		if (action == WALK_FILL) {
+			_cellIntervals[_fillNext[cell]++] = index;
+			return false;
+		}
+		for (int k = _cellStart[cell]; k < _cellStart[cell + 1]; k++) {
+			int i = _cellIntervals[k];
+			if (Line2D.linesIntersect(x1, y1, x2, y2, _x1[i], _y1[i], _x2[i],
+					_y2[i])) {
+				if (query == null) {
+					return true;
+				}
+				query.add(i);
+			}
+		}
+		return false;
+	}
+
+	private boolean inGrid(int column, int row) {
+		return column >= 0 && column < _nColumns && row >= 0 && row < _nRows;
+	}
+
+	private int clampColumn(int column) {
+		return Math.max(0, Math.min(_nColumns - 1, column));
+	}
+
+	private int clampRow(int row) {
+		return Math.max(0, Math.min(_nRows - 1, row));
+	}
+
+	/**
+	 * Queries on the grid. The indices found by the last query are read with
+	 * get, each index is found once. The buffers are kept between queries.
+	 */
+	public class Query {
+		private int[] _found = new int[16];
+		private int _nFound;
+
+		// _marks[i] == _stamp if interval i is found by the current query,
+		// allocated by the first query that finds intervals
+		private int[] _marks;
+		private int _stamp;
+
+		/**
+		 * test if a segment intersects any interval, stops at the first one
+		 *
+		 * @param x1
+		 * @param y1
+		 * @param x2
+		 * @param y2
+		 * @return
+		 */
+		public boolean intersects(double x1, double y1, double x2, double y2) {
+			return walk(x1, y1, x2, y2, WALK_TEST, -1, null);
+		}
+
+		/**
+		 * find the intervals a segment intersects
+		 *
+		 * @param x1
+		 * @param y1
+		 * @param x2
+		 * @param y2
+		 * @return number of intervals found
+		 */
+		public int findSegment(double x1, double y1, double x2, double y2) {
+			start();
+			walk(x1, y1, x2, y2, WALK_TEST, -1, this);
+			return _nFound;
+		}
+
+		/**
+		 * find the intervals within a distance of a point
+		 *
+		 * @param x
+		 * @param y
+		 * @param tolerance
+		 * @return number of intervals found
+		 */
+		public int findPoint(double x, double y, double tolerance) {
+			start();
+			int c0 = clampColumn((int) Math.floor((x - tolerance - _minX)
+					/ _cellSize));
+			int c1 = clampColumn((int) Math.floor((x + tolerance - _minX)
+					/ _cellSize));
+			int r0 = clampRow((int) Math.floor((y - tolerance - _minY)
+					/ _cellSize));
+			int r1 = clampRow((int) Math.floor((y + tolerance - _minY)
+					/ _cellSize));
+			for (int row = r0; row <= r1; row++) {
+				for (int column = c0; column <= c1; column++) {
+					int cell = row * _nColumns + column;
+					for (int k = _cellStart[cell]; k < _cellStart[cell + 1]; k++) {
+						int i = _cellIntervals[k];
+						if (Line2D.ptSegDist(_x1[i], _y1[i], _x2[i], _y2[i], x,
+								y) <= tolerance) {
+							add(i);
+						}
+					}
+				}
+			}
+			return _nFound;
+		}
+
+		/**
+		 * number of intervals found by the last query
+		 *
+		 * @return
+		 */
+		public int size() {
+			return _nFound;
+		}
+
+		/**
+		 * an interval found by the last query
+		 *
+		 * @param k
+		 *            from 0 to size() - 1
+		 * @return index of the interval in the list the grid is built from
+		 */
+		public int get(int k) {
+			if (k < 0 || k >= _nFound) {
+				throw new IndexOutOfBoundsException("Index: " + k + ", Size: "
+						+ _nFound);
+			}
+			return _found[k];
+		}
+
+		private void start() {
+			_nFound = 0;
+			_stamp++;
+			if (_marks == null) {
+				_marks = new int[_size];
+			} else if (_stamp == 0) {
+				// wrapped around, forget all marks
+				Arrays.fill(_marks, 0);
+				_stamp = 1;
+			}
+		}
+
+		private void add(int index) {
+			if (_marks[index] == _stamp) {
+				return;
+			}
+			_marks[index] = _stamp;
+			if (_nFound == _found.length) {
+				_found = Arrays.copyOf(_found, _nFound * 2);
+			}
+			_found[_nFound++] = index;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An R-tree over the bounding boxes of a list of intervals, bulk loaded once
+ * with Sort-Tile-Recursive packing.
+ *
+ * The intervals are sorted by the x of their centre and cut into vertical
+ * slices of about sqrt(n / NODE_CAPACITY) leaves each. Each slice is sorted
+ * by the y of the centres and cut into leaves of NODE_CAPACITY intervals.
+ * The leaves are packed into the nodes above them the same way, up to a
+ * single root. The children of a node are next to each other, so a node is
+ * its bounding box and the range of its children, kept in primitive arrays
+ * level by level.
+ *
+ * Both queries only test the intervals of the leaves whose boxes can hold a
+ * result, see queryWindow and queryNearest.
+ *
+ * @author
+ *
+ */
+public class IntervalRTree {
+
+	// children of a node
+	public static final int NODE_CAPACITY = 16;
+
+	// coordinates of the intervals
+	private int _size;
+	private double[] _x1;
+	private double[] _y1;
+	private double[] _x2;
+	private double[] _y2;
+
+	// intervals in the order of the leaves
+	private int[] _order;
+
+	// nodes of all levels, the leaves first and the root last. Node k covers
+	// _childStart[k] to _childEnd[k] - 1, which are positions in _order for
+	// a leaf and nodes of the level below otherwise.
+	private double[] _minX;
+	private double[] _minY;
+	private double[] _maxX;
+	private double[] _maxY;
+	private int[] _childStart;
+	private int[] _childEnd;
+	private int _nLeaves;
+	private int _nNodes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param intervals
+	 */
+	public IntervalRTree(List<SensorInterval> intervals) {
+		_size = intervals.size();
+		_x1 = new double[_size];
+		_y1 = new double[_size];
+		_x2 = new double[_size];
+		_y2 = new double[_size];
+		for (int i = 0; i < _size; i++) {
+			Line2D l = intervals.get(i).getInterval();
+			_x1[i] = l.getX1();
+			_y1[i] = l.getY1();
+			_x2[i] = l.getX2();
+			_y2[i] = l.getY2();
+		}
+
+		// at most twice as many nodes as leaves
+		int capacity = 2 * (_size / NODE_CAPACITY + 2);
+		_minX = new double[capacity];
+		_minY = new double[capacity];
+		_maxX = new double[capacity];
+		_maxY = new double[capacity];
+		_childStart = new int[capacity];
+		_childEnd = new int[capacity];
+
+		// the leaves, over the intervals
+		final double[] cx = new double[_size];
+		final double[] cy = new double[_size];
+		for (int i = 0; i < _size; i++) {
+			cx[i] = (_x1[i] + _x2[i]) / 2;
+			cy[i] = (_y1[i] + _y2[i]) / 2;
+		}
+		_order = pack(cx, cy);
+		for (int p = 0; p < _size; p += NODE_CAPACITY) {
+			int end = Math.min(_size, p + NODE_CAPACITY);
+			int k = addNode(p, end);
+			_minX[k] = _minY[k] = Double.POSITIVE_INFINITY;
+			_maxX[k] = _maxY[k] = Double.NEGATIVE_INFINITY;
+			for (int q = p; q < end; q++) {
+				int i = _order[q];
+				_minX[k] = Math.min(_minX[k], Math.min(_x1[i], _x2[i]));
+				_minY[k] = Math.min(_minY[k], Math.min(_y1[i], _y2[i]));
+				_maxX[k] = Math.max(_maxX[k], Math.max(_x1[i], _x2[i]));
+				_maxY[k] = Math.max(_maxY[k], Math.max(_y1[i], _y2[i]));
+			}
+		}
+		_nLeaves = _nNodes;
+
+		// the levels above, until there is one root
+		int levelStart = 0, levelEnd = _nNodes;
+		while (levelEnd - levelStart > 1) {
+			int n = levelEnd - levelStart;
+			double[] ncx = new double[n];
+			double[] ncy = new double[n];
+			for (int j = 0; j < n; j++) {
+				ncx[j] = (_minX[levelStart + j] + _maxX[levelStart + j]) / 2;
+				ncy[j] = (_minY[levelStart + j] + _maxY[levelStart + j]) / 2;
+			}
+			int[] order = pack(ncx, ncy);
+
+			// reorder the level so the children of a node are next to each
+			// other, no node refers to this level yet
+			reorderLevel(levelStart, order);
+
+			for (int p = 0; p < n; p += NODE_CAPACITY) {
+				int end = Math.min(n, p + NODE_CAPACITY);
+				int k = addNode(levelStart + p, levelStart + end);
+				_minX[k] = _minY[k] = Double.POSITIVE_INFINITY;
+				_maxX[k] = _maxY[k] = Double.NEGATIVE_INFINITY;
+				for (int c = levelStart + p; c < levelStart + end; c++) {
+					_minX[k] = Math.min(_minX[k], _minX[c]);
+					_minY[k] = Math.min(_minY[k], _minY[c]);
+					_maxX[k] = Math.max(_maxX[k], _maxX[c]);
+					_maxY[k] = Math.max(_maxY[k], _maxY[c]);
+				}
+			}
+			levelStart = levelEnd;
+			levelEnd = _nNodes;
+		}
+	}
+
+	/**
+	 * number of intervals in the tree
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * find the intervals that touch a rectangle
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @return indices of the intervals in the list the tree is built from,
+	 *         in increasing order
+	 */
+	public int[] queryWindow(double minX, double minY, double maxX,
+			double maxY) {
+		if (_nNodes == 0) {
+			return new int[0];
+		}
+		int[] found = new int[16];
+		int nFound = 0;
+
+		int[] stack = new int[_nNodes];
+		int top = 0;
+		stack[top++] = _nNodes - 1;
+		while (top > 0) {
+			int k = stack[--top];
+			if (_maxX[k] < minX || _minX[k] > maxX || _maxY[k] < minY
+					|| _minY[k] > maxY) {
+				continue;
+			}
+			if (k >= _nLeaves) {
+				for (int c = _childStart[k]; c < _childEnd[k]; c++) {
+					stack[top++] = c;
+				}
+				continue;
+			}
+			for (int p = _childStart[k]; p < _childEnd[k]; p++) {
+				int i = _order[p];
+				if (touches(i, minX, minY, maxX, maxY)) {
+					if (nFound == found.length) {
+						found = Arrays.copyOf(found, nFound * 2);
+					}
+					found[nFound++] = i;
+				}
+			}
+		}
+		found = Arrays.copyOf(found, nFound);
+		Arrays.sort(found);
+		return found;
+	}
+
+	/**
+	 * find the k intervals nearest to a point, searching the nodes in order
+	 * of the distance to their bounding box
+	 *
+	 * @param x
+	 * @param y
+	 * @param k
+	 * @return indices of the intervals in the list the tree is built from,
+	 *         nearest first
+	 */
+	public int[] queryNearest(double x, double y, int k) {
+		int n = Math.min(k, _size);
+		int[] found = new int[Math.max(0, n)];
+		if (n <= 0) {
+			return found;
+		}
+
+		// nodes and intervals by their distance, an entry is a node when it
+		// is >= 0 and interval -1 - entry otherwise
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(64,
+				new Comparator<double[]>() {
+					@Override
+					public int compare(double[] a, double[] b) {
+						return Double.compare(a[0], b[0]);
+					}
+				});
+		queue.add(new double[] { boxDistance(_nNodes - 1, x, y), _nNodes - 1 });
+		int nFound = 0;
+		while (nFound < n && !queue.isEmpty()) {
+			double[] e = queue.poll();
+			int entry = (int) e[1];
+			if (entry < 0) {
+				found[nFound++] = -1 - entry;
+			} else if (entry >= _nLeaves) {
+				for (int c = _childStart[entry]; c < _childEnd[entry]; c++) {
+					queue.add(new double[] { boxDistance(c, x, y), c });
+				}
+			} else {
+				for (int p = _childStart[entry]; p < _childEnd[entry]; p++) {
+					int i = _order[p];
+					queue.add(new double[] {
+							Line2D.ptSegDist(_x1[i], _y1[i], _x2[i], _y2[i], x,
+									y), -1 - i });
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * test if an interval touches a rectangle
+	 */
+	private boolean touches(int i, double minX, double minY, double maxX,
+			double maxY) {
+		if (inside(_x1[i], _y1[i], minX, minY, maxX, maxY)
+				|| inside(_x2[i], _y2[i], minX, minY, maxX, maxY)) {
+			return true;
+		}
+		// otherwise it has to cross a side of the rectangle
+		return Line2D.linesIntersect(_x1[i], _y1[i], _x2[i], _y2[i], minX,
+				minY, maxX, minY)
+				|| Line2D.linesIntersect(_x1[i], _y1[i], _x2[i], _y2[i], maxX,
+						minY, maxX, maxY)
+				|| Line2D.linesIntersect(_x1[i], _y1[i], _x2[i], _y2[i], maxX,
+						maxY, minX, maxY)
+				|| Line2D.linesIntersect(_x1[i], _y1[i], _x2[i], _y2[i], minX,
+						maxY, minX, minY);
+	}
+
+	private static boolean inside(double x, double y, double minX,
+			double minY, double maxX, double maxY) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	/**
+	 * distance from a point to the bounding box of a node, 0 inside it
+	 */
+	private double boxDistance(int k, double x, double y) {
+		double dx = Math.max(0, Math.max(_minX[k] - x, x - _maxX[k]));
+		double dy = Math.max(0, Math.max(_minY[k] - y, y - _maxY[k]));
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * add a node with the children from start to end - 1
+	 *
+	 * @return index of the node
+	 */
+	private int addNode(int start, int end) {
+		_childStart[_nNodes] = start;
+		_childEnd[_nNodes] = end;
+		return _nNodes++;
+	}
+
+	/**
+	 * move the nodes of a level into a new order
+	 *
+	 * @param levelStart
+	 *            first node of the level
+	 * @param order
+	 *            order[j] is the node at levelStart + order[j] to put at
+	 *            levelStart + j
+	 */
+	private void reorderLevel(int levelStart, int[] order) {
+		int n = order.length;
+		double[] minX = new double[n], minY = new double[n];
+		double[] maxX = new double[n], maxY = new double[n];
+		int[] starts = new int[n], ends = new int[n];
+		for (int j = 0; j < n; j++) {
+			int k = levelStart + order[j];
+			minX[j] = _minX[k];
+			minY[j] = _minY[k];
+			maxX[j] = _maxX[k];
+			maxY[j] = _maxY[k];
+			starts[j] = _childStart[k];
+			ends[j] = _childEnd[k];
+		}
+		System.arraycopy(minX, 0, _minX, levelStart, n);
+		System.arraycopy(minY, 0, _minY, levelStart, n);
+		System.arraycopy(maxX, 0, _maxX, levelStart, n);
+		System.arraycopy(maxY, 0, _maxY, levelStart, n);
+		System.arraycopy(starts, 0, _childStart, levelStart, n);
+		System.arraycopy(ends, 0, _childEnd, levelStart, n);
+	}
+
+	/**
+	 * order items by Sort-Tile-Recursive packing of their centres
+	 *
+	 * @param cx
+	 * @param cy
+	 * @return the items in packed order
+	 */
+	private static int[] pack(final double[] cx, final double[] cy) {
+		int n = cx.length;
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(cx[a], cx[b]);
+			}
+		});
+
+		// vertical slices of about sqrt(number of nodes) nodes each
+		int nNodes = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int nSlices = (int) Math.ceil(Math.sqrt(nNodes));
+		int sliceSize = NODE_CAPACITY
+				* (int) Math.ceil((double) nNodes / Math.max(1, nSlices));
+		Comparator<Integer> byY = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(cy[a], cy[b]);
+			}
+		};
+		for (int s = 0; s < n; s += sliceSize) {
+			Arrays.sort(order, s, Math.min(n, s + sliceSize), byY);
+		}
+
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+}
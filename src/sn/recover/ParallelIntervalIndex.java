@@ -0,0 +1,252 @@
+package sn.recover;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of a set of parallel intervals for intersection queries with line
+ * segments.
+ *
+ * The intervals are sorted by their offset along the normal of their
+ * direction, and those with the same offset are grouped into lines. Within a
+ * line they are sorted by their parameter along the direction, with the
+ * largest end so far kept for each of them. A segment crossing the lines is
+ * then tested by finding the first line at or above its lowest offset with a
+ * binary search and, for each line up to its highest offset, binary
+ * searching the point where it crosses the line. A query costs O(log n) plus
+ * O(log n) for each line the segment crosses, which replaces testing the
+ * segment against every interval.
+ *
+ * Intervals and segments that only touch count as intersecting, the same as
+ * Line2D.intersectsLine.
+ *
+ * @author
+ *
+ */
+public class ParallelIntervalIndex {
+
+	// offsets closer than this are on the same line
+	public static final double LINE_TOLERANCE = 1e-6;
+
+	// direction of the intervals
+	private double _cos;
+	private double _sin;
+
+	// offset of each line, and its intervals from _lineStart[l] to
+	// _lineStart[l + 1] - 1
+	private double[] _lineOffsets;
+	private int[] _lineStart;
+	private int _nLines;
+
+	// start of the intervals as parameters along the direction, sorted
+	// within each line, and the largest end of the intervals of the line up
+	// to each one
+	private double[] _starts;
+	private double[] _maxEnds;
+
+	/**
+	 * Constructor
+	 *
+	 * @param intervals
+	 *            parallel intervals
+	 * @param angle
+	 *            direction of the intervals in radians
+	 */
+	public ParallelIntervalIndex(List<SensorInterval> intervals, double angle) {
+		_cos = Math.cos(angle);
+		_sin = Math.sin(angle);
+
+		int n = intervals.size();
+		final double[] offsets = new double[n];
+		final double[] starts = new double[n];
+		double[] ends = new double[n];
+		for (int i = 0; i < n; i++) {
+			SensorInterval si = intervals.get(i);
+			double x1 = si.getInterval().getX1(), y1 = si.getInterval().getY1();
+			double x2 = si.getInterval().getX2(), y2 = si.getInterval().getY2();
+			offsets[i] = getOffset((x1 + x2) / 2, (y1 + y2) / 2);
+			double t1 = getParam(x1, y1), t2 = getParam(x2, y2);
+			starts[i] = Math.min(t1, t2);
+			ends[i] = Math.max(t1, t2);
+		}
+
+		// group the intervals into lines by their offset
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(offsets[a], offsets[b]);
+			}
+		});
+		final int[] lines = new int[n];
+		_lineOffsets = new double[n];
+		_lineStart = new int[n + 1];
+		_nLines = 0;
+		for (int k = 0; k < n; k++) {
+			int i = order[k];
+			if (_nLines == 0
+					|| offsets[i] - _lineOffsets[_nLines - 1] > LINE_TOLERANCE) {
+				_lineOffsets[_nLines] = offsets[i];
+				_lineStart[_nLines] = k;
+				_nLines++;
+			}
+			lines[i] = _nLines - 1;
+		}
+		_lineStart[_nLines] = n;
+
+		// sort the intervals of each line along the direction
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				if (lines[a] != lines[b]) {
+					return lines[a] < lines[b] ? -1 : 1;
+				}
+				return Double.compare(starts[a], starts[b]);
+			}
+		});
+		_starts = new double[n];
+		_maxEnds = new double[n];
+		for (int l = 0; l < _nLines; l++) {
+			double maxEnd = Double.NEGATIVE_INFINITY;
+			for (int k = _lineStart[l]; k < _lineStart[l + 1]; k++) {
+				int i = order[k];
+				_starts[k] = starts[i];
+				maxEnd = Math.max(maxEnd, ends[i]);
+				_maxEnds[k] = maxEnd;
+			}
+		}
+	}
+
+	/**
+	 * number of intervals in the index
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _lineStart[_nLines];
+	}
+
+	/**
+	 * number of distinct lines the intervals are on
+	 *
+	 * @return
+	 */
+	public int getLineCount() {
+		return _nLines;
+	}
+
+	/**
+	 * test if a line segment intersects any interval in the index
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @return
+	 */
+	public boolean intersects(double x1, double y1, double x2, double y2) {
+		double o1 = getOffset(x1, y1);
+		double o2 = getOffset(x2, y2);
+
+		if (Math.abs(o2 - o1) <= LINE_TOLERANCE) {
+			// parallel to the lines, only overlaps intervals on its own line
+			double mid = (o1 + o2) / 2;
+			double t1 = getParam(x1, y1), t2 = getParam(x2, y2);
+			double tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+			for (int l = firstLine(mid - LINE_TOLERANCE); l < _nLines
+					&& _lineOffsets[l] <= mid + LINE_TOLERANCE; l++) {
+				if (overlaps(l, tMin, tMax)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// the point where the segment crosses each line between its ends
+		double lo = Math.min(o1, o2), hi = Math.max(o1, o2);
+		double dx = x2 - x1, dy = y2 - y1;
+		for (int l = firstLine(lo); l < _nLines && _lineOffsets[l] <= hi; l++) {
+			double lambda = (_lineOffsets[l] - o1) / (o2 - o1);
+			double t = getParam(x1 + lambda * dx, y1 + lambda * dy);
+			if (overlaps(l, t, t)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * test if an interval intersects any interval in the index
+	 *
+	 * @param interval
+	 * @return
+	 */
+	public boolean intersects(SensorInterval interval) {
+		return intersects(interval.getInterval().getX1(), interval
+				.getInterval().getY1(), interval.getInterval().getX2(),
+				interval.getInterval().getY2());
+	}
+
+	/**
+	 * test if any of a list of intervals intersects any interval in the
+	 * index, stops at the first one that does
+	 *
+	 * @param intervals
+	 * @return
+	 */
+	public boolean intersectsAny(List<SensorInterval> intervals) {
+		for (int i = 0; i < intervals.size(); i++) {
+			if (intersects(intervals.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * test if an interval of a line overlaps [tMin, tMax]
+	 */
+	private boolean overlaps(int line, double tMin, double tMax) {
+		// last interval starting at or before tMax
+		int lo = _lineStart[line], hi = _lineStart[line + 1] - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_starts[mid] <= tMax) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found >= 0 && _maxEnds[found] >= tMin;
+	}
+
+	/**
+	 * index of the first line with an offset of at least offset
+	 */
+	private int firstLine(double offset) {
+		int lo = 0, hi = _nLines;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_lineOffsets[mid] < offset) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private double getOffset(double x, double y) {
+		return x * _sin - y * _cos;
+	}
+
+	private double getParam(double x, double y) {
+		return x * _cos + y * _sin;
+	}
+}
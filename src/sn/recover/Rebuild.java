@@ -9,7 +9,6 @@ import java.awt.Graphics2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -42,37 +41,18 @@ public class Rebuild {
 		// if file exists, read the file.
 		if (file.exists()) {
 
-			BufferedReader reader = null;
+			SensorTextParser parser = null;
 			try {
-				reader = new BufferedReader(new FileReader(file));
-				String sensorData = null;
+				parser = new SensorTextParser(new FileReader(file));
 				int sensorId;
 				int prevSensorId = -1;
 				Point2D sensorStart = null;
 				Point2D sensorEnd = null;
-				String[] data;
 
 				// Read each line
-				while ((sensorData = reader.readLine()) != null) {
+				while (parser.next()) {
 					
-					// parse the string
-					data = sensorData.split(" ");
-					sensorId = Integer.parseInt(data[0].split("Sensor")[1]);
-					String p1 = data[1].substring(1, data[1].length() - 1);
-					double x1 = Double.parseDouble(p1.split(",")[0]);
-					double y1 = Double.parseDouble(p1.split(",")[1]);
-					Point2D start = new Point2D.Double(x1, y1);
-
-					String p2 = data[2].substring(1, data[2].length() - 1);
-					double x2 = Double.parseDouble(p2.split(",")[0]);
-					double y2 = Double.parseDouble(p2.split(",")[1]);
-					Point2D end = new Point2D.Double(x2, y2);
-
-					// if it's the first sensor
-					if (prevSensorId == -1) {
-						sensorStart = start;
-						sensorEnd = end;
-					}
+					sensorId = parser.getSensorID();
 
 					// if it's a new sensor
 					if (sensorId != prevSensorId) {
@@ -80,22 +60,26 @@ public class Rebuild {
 							starts.add(sensorStart);
 							ends.add(sensorEnd);
 						}
-						sensorStart = start;
-						sensorEnd = end;
+						sensorStart = new Point2D.Double(parser.getX1(),
+								parser.getY1());
+						sensorEnd = new Point2D.Double(parser.getX2(),
+								parser.getY2());
 					}
 					// otherwise if it's the same sensor
 					else {
-						if(sensorStart.getY() < start.getY())
-							sensorStart = start;
-						if(sensorEnd.getY()>end.getY())
-							sensorEnd = end;
+						if(sensorStart.getY() < parser.getY1())
+							sensorStart = new Point2D.Double(parser.getX1(),
+									parser.getY1());
+						if(sensorEnd.getY() > parser.getY2())
+							sensorEnd = new Point2D.Double(parser.getX2(),
+									parser.getY2());
 					}
 					// assign previous sensor id.
 					prevSensorId = sensorId;
 
 				}
 				// close reader
-				reader.close();
+				parser.close();
 				
 				// add start to outer points
 				for(Point2D pt : starts){
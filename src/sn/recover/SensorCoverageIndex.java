@@ -0,0 +1,216 @@
+package sn.recover;
+
+import java.util.List;
+
+/**
+ * The parts of each sensor line covered by positive intervals, as sorted
+ * boundary arrays.
+ *
+ * A position on a sensor is its parameter t = x * cos(angle) + y *
+ * sin(angle) along the direction of the lines, see getParam. The positive
+ * intervals of each sensor are sorted by their start and overlapping ones
+ * merged, which leaves the start and end of each covered part in increasing
+ * order: even entries are starts, odd entries are ends. A position is
+ * covered if an odd number of boundaries is below it, or if it is on a
+ * boundary, and the next boundary is the first one above it. Both are a
+ * binary search in the boundaries of one sensor.
+ *
+ * @author
+ *
+ */
+public class SensorCoverageIndex {
+
+	// direction of the sensor lines
+	private double _cos;
+	private double _sin;
+
+	// boundaries of sensor j are _boundaries[_lineStart[j - _minId]] to
+	// _boundaries[_lineStart[j - _minId + 1] - 1]
+	private int _minId;
+	private int _maxId;
+	private int[] _lineStart;
+	private double[] _boundaries;
+
+	/**
+	 * Constructor
+	 *
+	 * @param intervals
+	 *            positive intervals
+	 * @param angle
+	 *            direction of the sensor lines in radians
+	 */
+	public SensorCoverageIndex(List<SensorInterval> intervals, double angle) {
+		_cos = Math.cos(angle);
+		_sin = Math.sin(angle);
+
+		int n = intervals.size();
+		_minId = 1;
+		_maxId = 0;
+		for (int i = 0; i < n; i++) {
+			int id = intervals.get(i).getSensorID();
+			if (i == 0 || id < _minId) {
+				_minId = id;
+			}
+			if (i == 0 || id > _maxId) {
+				_maxId = id;
+			}
+		}
+
+		// bucket the intervals by sensor
+		int nLines = _maxId - _minId + 1;
+		int[] start = new int[nLines + 1];
+		for (int i = 0; i < n; i++) {
+			start[intervals.get(i).getSensorID() - _minId + 1]++;
+		}
+		for (int j = 0; j < nLines; j++) {
+			start[j + 1] += start[j];
+		}
+		double[] starts = new double[n];
+		double[] ends = new double[n];
+		int[] next = new int[nLines];
+		System.arraycopy(start, 0, next, 0, nLines);
+		for (int i = 0; i < n; i++) {
+			SensorInterval si = intervals.get(i);
+			double t1 = getParam(si.getInterval().getX1(), si.getInterval()
+					.getY1());
+			double t2 = getParam(si.getInterval().getX2(), si.getInterval()
+					.getY2());
+			int k = next[si.getSensorID() - _minId]++;
+			starts[k] = Math.min(t1, t2);
+			ends[k] = Math.max(t1, t2);
+		}
+
+		// sort each sensor and merge what overlaps
+		_lineStart = new int[nLines + 1];
+		_boundaries = new double[2 * n];
+		int nBoundaries = 0;
+		for (int j = 0; j < nLines; j++) {
+			_lineStart[j] = nBoundaries;
+			sortByStart(starts, ends, start[j], start[j + 1]);
+			for (int k = start[j]; k < start[j + 1]; k++) {
+				if (nBoundaries > _lineStart[j]
+						&& starts[k] <= _boundaries[nBoundaries - 1]) {
+					_boundaries[nBoundaries - 1] = Math.max(
+							_boundaries[nBoundaries - 1], ends[k]);
+				} else {
+					_boundaries[nBoundaries++] = starts[k];
+					_boundaries[nBoundaries++] = ends[k];
+				}
+			}
+		}
+		_lineStart[nLines] = nBoundaries;
+	}
+
+	/**
+	 * position of a point along the sensor lines
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public double getParam(double x, double y) {
+		return x * _cos + y * _sin;
+	}
+
+	/**
+	 * test if a position on a sensor is covered by a positive interval, the
+	 * ends of an interval count as covered
+	 *
+	 * @param sensorId
+	 * @param t
+	 *            position along the sensor, see getParam
+	 * @return
+	 */
+	public boolean isPositive(int sensorId, double t) {
+		if (sensorId < _minId || sensorId > _maxId) {
+			return false;
+		}
+		int from = _lineStart[sensorId - _minId];
+		int k = upperBound(sensorId, t);
+		if (k > from && _boundaries[k - 1] == t) {
+			return true;
+		}
+		return (k - from) % 2 == 1;
+	}
+
+	/**
+	 * the first start or end of a covered part of a sensor after a position
+	 *
+	 * @param sensorId
+	 * @param t
+	 *            position along the sensor, see getParam
+	 * @return the position of the boundary, Double.POSITIVE_INFINITY if
+	 *         there is none
+	 */
+	public double nextBoundary(int sensorId, double t) {
+		if (sensorId < _minId || sensorId > _maxId) {
+			return Double.POSITIVE_INFINITY;
+		}
+		int k = upperBound(sensorId, t);
+		return k < _lineStart[sensorId - _minId + 1] ? _boundaries[k]
+				: Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * the start or end of a covered part of a sensor nearest to a position
+	 *
+	 * @param sensorId
+	 * @param t
+	 *            position along the sensor, see getParam
+	 * @return the position of the boundary, Double.NaN if the sensor has no
+	 *         positive interval
+	 */
+	public double nearestBoundary(int sensorId, double t) {
+		if (sensorId < _minId || sensorId > _maxId) {
+			return Double.NaN;
+		}
+		int from = _lineStart[sensorId - _minId];
+		int to = _lineStart[sensorId - _minId + 1];
+		int k = upperBound(sensorId, t);
+		if (from == to) {
+			return Double.NaN;
+		} else if (k == from) {
+			return _boundaries[k];
+		} else if (k == to) {
+			return _boundaries[k - 1];
+		}
+		return t - _boundaries[k - 1] <= _boundaries[k] - t ? _boundaries[k - 1]
+				: _boundaries[k];
+	}
+
+	/**
+	 * index of the first boundary of a sensor above t
+	 */
+	private int upperBound(int sensorId, double t) {
+		int lo = _lineStart[sensorId - _minId];
+		int hi = _lineStart[sensorId - _minId + 1];
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_boundaries[mid] <= t) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * insertion sort of intervals by their start, they are usually in order
+	 * already
+	 */
+	private static void sortByStart(double[] starts, double[] ends, int from,
+			int to) {
+		for (int i = from + 1; i < to; i++) {
+			double s = starts[i], e = ends[i];
+			int j = i - 1;
+			while (j >= from && starts[j] > s) {
+				starts[j + 1] = starts[j];
+				ends[j + 1] = ends[j];
+				j--;
+			}
+			starts[j + 1] = s;
+			ends[j + 1] = e;
+		}
+	}
+}
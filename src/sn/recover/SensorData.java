@@ -6,13 +6,22 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 
@@ -20,16 +29,92 @@ import javax.imageio.ImageIO;
 
 import sn.debug.ShowDebugImage;
 import sn.regiondetect.ComplexRegion;
-import sn.regiondetect.GeomUtil;
+import sn.regiondetect.CrossingParityBuilder;
+import sn.regiondetect.IntervalSet;
+import sn.regiondetect.ParallelLines;
+import sn.regiondetect.PathIntersector;
+import sn.regiondetect.ProjectedExtentIndex;
 import sn.regiondetect.Region;
+import sn.regiondetect.RegionEdges;
 
 // The class for one set of sensor data
 public class SensorData {
 
+	// methods for building the intervals from a complex region
+	// intersect each line with each region in turn
+	public static final int BUILD_PER_LINE = 0;
+	// sweep the edges of each region over all lines at once
+	public static final int BUILD_SWEEP = 1;
+	// intersect the lines with the regions on several threads
+	public static final int BUILD_PARALLEL = 2;
+	// sweep the edges of each region in fixed-point arithmetic, curves
+	// flattened within a given flatness
+	public static final int BUILD_FIXED_POINT = 3;
+	// intersect each line with the edges of the regions, many edges at a
+	// time, curves flattened within a given flatness
+	public static final int BUILD_EDGE_KERNEL = 4;
+
+	// number of threads of BUILD_PARALLEL unless the caller gives one
+	public static final int DEFAULT_BUILD_THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	// storage of the intervals
+	// a list of SensorInterval objects
+	public static final int STORE_LIST = 0;
+	// parallel primitive arrays, see SensorIntervalStore
+	public static final int STORE_ARRAYS = 1;
+	// parameters along each sensor line, see SensorLineIntervals
+	public static final int STORE_PARAMETRIC = 2;
+
+	// methods for testing if two sets of sensor data are compatible
+	// test each interval against each interval of the other set
+	public static final int CHECK_PAIRWISE = 0;
+	// sort the intervals of the other set along the normal of its lines, see
+	// ParallelIntervalIndex
+	public static final int CHECK_SWEEP = 1;
+	// find the crossed sensors of the other set from its angle and gap, see
+	// SensorLatticeIndex
+	public static final int CHECK_LATTICE = 2;
+	// bucket the intervals of the other set in a uniform grid, see
+	// IntervalGrid
+	public static final int CHECK_GRID = 3;
+
 	// variables in the class
 	// list of positive intervals detected in data
 	private List<SensorInterval> positiveIntervals;
+	// derived from the positive intervals when first read, see
+	// getNegativeIntervals
 	private List<SensorInterval> negativeIntervals;
+	private boolean negativesDerived;
+
+	// indices of the intervals for compatibility tests, built when first used
+	private ParallelIntervalIndex positiveIndex;
+	private ParallelIntervalIndex negativeIndex;
+	private SensorLatticeIndex positiveLattice;
+	private SensorLatticeIndex negativeLattice;
+	private IntervalGrid positiveGrid;
+	private IntervalGrid negativeGrid;
+
+	// R-trees of the intervals for window and nearest queries, built when
+	// first used
+	private IntervalRTree positiveRTree;
+	private IntervalRTree negativeRTree;
+
+	// covered parts of each sensor, built when first used
+	private SensorCoverageIndex coverageIndex;
+
+	// primitive storage backing the lists above, null unless STORE_ARRAYS
+	private SensorIntervalStore positiveStore;
+	private SensorIntervalStore negativeStore;
+
+	// parametric storage backing the lists above, null unless
+	// STORE_PARAMETRIC
+	private SensorLineIntervals positiveLineIntervals;
+	private SensorLineIntervals negativeLineIntervals;
+
+	// number of changes to the positive intervals of list storage, the
+	// negative intervals handed out before a change are no longer valid
+	private int positivesModCount;
 
 	// Angle of the parallel positive intervals in radians
 	private double sensorAngle;
@@ -50,7 +135,6 @@ public class SensorData {
 	public SensorData(int canvasWidth, int canvasHeight) {
 		// initialize variables
 		positiveIntervals = new ArrayList<SensorInterval>();
-		negativeIntervals = new ArrayList<SensorInterval>();
 		sensorAngle = Double.NaN; // initiated at NaN
 		sensorGap = Double.NaN; // initiated at NaN
 		sensorCount = Integer.MIN_VALUE; // initiated at min value
@@ -58,6 +142,47 @@ public class SensorData {
 		height = canvasHeight;
 	}
 
+	/**
+	 * Copy constructor, the copy has its own storage of the same kind. The
+	 * negative intervals are only copied if they are derived already.
+	 * 
+	 * @param other
+	 */
+	public SensorData(SensorData other) {
+		if (other.positiveStore != null) {
+			positiveStore = new SensorIntervalStore(other.positiveStore.size());
+			positiveStore.splice(0, 0, other.positiveStore);
+			positiveIntervals = positiveStore.asList();
+			negativeStore = new SensorIntervalStore();
+			negativeIntervals = negativeStore.asList();
+			if (other.negativesDerived) {
+				negativeStore.splice(0, 0, other.negativeStore);
+				negativesDerived = true;
+			}
+		} else if (other.positiveLineIntervals != null) {
+			positiveLineIntervals = new SensorLineIntervals(
+					other.positiveLineIntervals.getLines());
+			positiveLineIntervals.splice(0, 0, other.positiveLineIntervals);
+			positiveIntervals = positiveLineIntervals.asList();
+			negativeLineIntervals = new SensorLineIntervals(
+					other.negativeLineIntervals.getLines());
+			negativeIntervals = negativeLineIntervals.asList();
+			if (other.negativesDerived) {
+				negativeLineIntervals.splice(0, 0, other.negativeLineIntervals);
+				negativesDerived = true;
+			}
+		} else {
+			// the full line negatives of other refer to its own positives
+			positiveIntervals = new ArrayList<SensorInterval>(
+					other.positiveIntervals);
+		}
+		sensorAngle = other.sensorAngle;
+		sensorGap = other.sensorGap;
+		sensorCount = other.sensorCount;
+		width = other.width;
+		height = other.height;
+	}
+
 	/**
 	 * Construct from a complex region and other info
 	 * 
@@ -70,50 +195,870 @@ public class SensorData {
 	 */
 	public SensorData(ComplexRegion complexRegion, double gap, double angle,
 			int canvasWidth, int canvasHeight) throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight,
+				BUILD_PER_LINE);
+	}
 
-		positiveIntervals = new ArrayList<SensorInterval>();
-		negativeIntervals = new ArrayList<SensorInterval>();
+	/**
+	 * Construct from a complex region and other info
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 *            BUILD_PER_LINE, BUILD_SWEEP, BUILD_PARALLEL,
+	 *            BUILD_FIXED_POINT or BUILD_EDGE_KERNEL
+	 * @throws Exception
+	 */
+	public SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode) throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight, buildMode,
+				STORE_LIST);
+	}
+
+	/**
+	 * Construct from a complex region and other info
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 *            BUILD_PER_LINE, BUILD_SWEEP, BUILD_PARALLEL,
+	 *            BUILD_FIXED_POINT or BUILD_EDGE_KERNEL
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 * @throws Exception
+	 */
+	public SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode, int storage)
+			throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight, buildMode,
+				storage, DEFAULT_BUILD_THREADS, null, 0);
+	}
+
+	/**
+	 * Construct from a complex region and other info, with the flatness
+	 * BUILD_FIXED_POINT and BUILD_EDGE_KERNEL need. They intersect the lines
+	 * with the curved edges of the regions as lines within the flatness, so
+	 * their intervals approximate those of the other modes.
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 *            BUILD_PER_LINE, BUILD_SWEEP, BUILD_PARALLEL,
+	 *            BUILD_FIXED_POINT or BUILD_EDGE_KERNEL
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 * @param flatness
+	 *            largest distance in pixels of the lines from the curves
+	 *            they replace, not used by the exact modes
+	 * @throws Exception
+	 */
+	public SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode, int storage,
+			double flatness) throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight, buildMode,
+				storage, DEFAULT_BUILD_THREADS, null, flatness);
+	}
+
+	/**
+	 * Construct from a complex region and other info, BUILD_PARALLEL runs on
+	 * a pool of threads of its own
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 *            BUILD_PER_LINE, BUILD_SWEEP, BUILD_PARALLEL,
+	 *            BUILD_FIXED_POINT or BUILD_EDGE_KERNEL
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 * @param nThreads
+	 *            number of threads of BUILD_PARALLEL, not used by the other
+	 *            modes
+	 * @throws Exception
+	 */
+	public SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode, int storage,
+			int nThreads) throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight, buildMode,
+				storage, nThreads, null, 0);
+	}
+
+	/**
+	 * Construct from a complex region and other info, BUILD_PARALLEL runs on
+	 * an executor of the caller
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 *            BUILD_PER_LINE, BUILD_SWEEP, BUILD_PARALLEL,
+	 *            BUILD_FIXED_POINT or BUILD_EDGE_KERNEL
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 * @param executor
+	 *            executor of BUILD_PARALLEL, not shut down
+	 * @throws Exception
+	 */
+	public SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode, int storage,
+			ExecutorService executor) throws Exception {
+		this(complexRegion, gap, angle, canvasWidth, canvasHeight, buildMode,
+				storage, DEFAULT_BUILD_THREADS, executor, 0);
+	}
+
+	/**
+	 * Construct from a complex region and other info
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param buildMode
+	 * @param storage
+	 * @param nThreads
+	 *            number of threads of BUILD_PARALLEL, the lines are split
+	 *            into blocks for this many threads
+	 * @param executor
+	 *            executor of BUILD_PARALLEL, null for a pool of nThreads
+	 *            threads of its own
+	 * @param flatness
+	 *            flatness of BUILD_FIXED_POINT and BUILD_EDGE_KERNEL, 0 if
+	 *            not given
+	 * @throws Exception
+	 */
+	private SensorData(ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight, int buildMode, int storage,
+			int nThreads, ExecutorService executor, double flatness)
+			throws Exception {
+
+		ParallelLines lines = initStorage(gap, angle, canvasWidth,
+				canvasHeight, storage);
+
+		// generate a complex region
+		Region[] regions = complexRegion.getComplexRegion();
+
+		if (buildMode == BUILD_SWEEP) {
+			SensorSweep sweep = new SensorSweep(lines);
+			for (Region p : regions) {
+				sweep.addRegion(p);
+			}
+			addSweepIntervals(sweep);
+		} else if (buildMode == BUILD_FIXED_POINT) {
+			if (flatness <= 0) {
+				throw new IllegalArgumentException(
+						"BUILD_FIXED_POINT approximates curved regions, "
+								+ "construct it with a flatness");
+			}
+			FixedPointSweep sweep = new FixedPointSweep(lines, flatness);
+			sweep.addRegions(new RegionEdges(regions));
+			addSweepIntervals(sweep);
+		} else if (buildMode == BUILD_EDGE_KERNEL) {
+			if (flatness <= 0) {
+				throw new IllegalArgumentException(
+						"BUILD_EDGE_KERNEL approximates curved regions, "
+								+ "construct it with a flatness");
+			}
+			EdgeLineKernel kernel = new EdgeLineKernel(regions, flatness);
+			kernel.setLines(lines);
+			ProjectedExtentIndex index = new ProjectedExtentIndex(regions,
+					lines);
+			CrossingParityBuilder builder = new CrossingParityBuilder();
+			for (int i = 0; i < sensorCount; i++) {
+				addLineIntervals(lines, i,
+						kernel.getLineIntervals(i, index, builder));
+			}
+		} else if (buildMode == BUILD_PARALLEL) {
+			double[][] intervals = getLineIntervals(lines, regions,
+					new ProjectedExtentIndex(regions, lines), nThreads,
+					executor);
+			for (int i = 0; i < sensorCount; i++) {
+				addLineIntervals(lines, i, intervals[i]);
+			}
+		} else {
+			ProjectedExtentIndex index = new ProjectedExtentIndex(regions,
+					lines);
+			CrossingParityBuilder builder = new CrossingParityBuilder();
+			for (int i = 0; i < sensorCount; i++) {
+				addLineIntervals(lines, i,
+						getLineIntervals(lines, i, regions, index, builder));
+			}
+		}
+
+		trimToSize();
+	}
+
+	/**
+	 * Construct from regions already decoded into edges, see forAngles
+	 * 
+	 * @param edges
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 */
+	private SensorData(RegionEdges edges, double gap, double angle,
+			int canvasWidth, int canvasHeight, int storage) {
+		ParallelLines lines = initStorage(gap, angle, canvasWidth,
+				canvasHeight, storage);
+
+		SensorSweep sweep = new SensorSweep(lines);
+		sweep.addRegions(edges);
+		addSweepIntervals(sweep);
+
+		trimToSize();
+	}
+
+	/**
+	 * Construct from primitive storage read from a file, see SensorDataFile
+	 * 
+	 * @param positives
+	 * @param negatives
+	 *            null to derive the negative intervals when first read
+	 * @param angle
+	 * @param gap
+	 * @param count
+	 *            number of sensors
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 */
+	SensorData(SensorIntervalStore positives, SensorIntervalStore negatives,
+			double angle, double gap, int count, int canvasWidth,
+			int canvasHeight) {
+		positiveStore = positives;
+		positiveIntervals = positiveStore.asList();
+		negativeStore = negatives;
+		if (negativeStore == null) {
+			negativeStore = new SensorIntervalStore();
+		} else {
+			negativesDerived = true;
+		}
+		negativeIntervals = negativeStore.asList();
 		sensorAngle = angle;
 		sensorGap = gap;
-		sensorCount = Integer.MIN_VALUE; // initiated at min value
+		sensorCount = count;
 		width = canvasWidth;
 		height = canvasHeight;
+	}
 
-		// generate a set of parallel lines to fill the canvas
-		List<Line2D> parallelLines = GeomUtil.generateParallelLines(sensorGap,
-				sensorAngle, canvasWidth, canvasHeight);
-		sensorCount = parallelLines.size();
+	/**
+	 * Construct one set of sensor data for each angle. The regions are
+	 * decoded into edges with their bounding boxes once and shared by the
+	 * sweeps of all angles.
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angles
+	 * @return sensor data of each angle
+	 * @throws Exception
+	 */
+	public static SensorData[] forAngles(ComplexRegion complexRegion,
+			double gap, double[] angles) throws Exception {
+		return forAngles(complexRegion, gap, angles, STORE_LIST);
+	}
 
-		// generate a complex region
+	/**
+	 * Construct one set of sensor data for each angle, sharing the decoded
+	 * regions
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angles
+	 * @param storage
+	 *            STORE_LIST, STORE_ARRAYS or STORE_PARAMETRIC
+	 * @return sensor data of each angle
+	 * @throws Exception
+	 */
+	public static SensorData[] forAngles(ComplexRegion complexRegion,
+			double gap, double[] angles, int storage) throws Exception {
+		RegionEdges edges = new RegionEdges(complexRegion.getComplexRegion());
+		SensorData[] data = new SensorData[angles.length];
+		for (int i = 0; i < angles.length; i++) {
+			data[i] = new SensorData(edges, gap, angles[i],
+					complexRegion.getWidth(), complexRegion.getHeight(),
+					storage);
+		}
+		return data;
+	}
+
+	/**
+	 * Generate sensor data one sensor at a time without keeping it. The
+	 * positive intervals of each sensor line are built from its crossings
+	 * with the regions and the negative intervals are derived from them as
+	 * for sensor data built in memory. Both are passed to the listener in
+	 * sensor id order, a sensor without positive intervals once the next
+	 * positive interval is found, so memory is bounded by one sensor line and
+	 * the ids of the sensors waiting for it.
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param listener
+	 * @throws Exception
+	 */
+	public static void streamIntervals(ComplexRegion complexRegion,
+			double gap, double angle, int canvasWidth, int canvasHeight,
+			SensorIntervalListener listener) throws Exception {
+		ParallelLines lines = new ParallelLines(gap, angle, canvasWidth,
+				canvasHeight);
 		Region[] regions = complexRegion.getComplexRegion();
+		ProjectedExtentIndex index = new ProjectedExtentIndex(regions, lines);
+		CrossingParityBuilder builder = new CrossingParityBuilder();
+
+		// derives the negative intervals the same way as the sensor data
+		// built in memory
+		SensorData shape = new SensorData(canvasWidth, canvasHeight);
+		shape.sensorAngle = angle;
+		shape.sensorGap = gap;
+		double gapInX = Math.abs(gap / Math.sin(angle));
+
+		List<SensorInterval> positives = new ArrayList<SensorInterval>();
+		List<SensorInterval> negatives = new ArrayList<SensorInterval>();
+
+		// sensors without positive intervals, their full negative interval
+		// is shifted from the next positive interval
+		int[] pending = new int[16];
+		int nPending = 0;
+		SensorInterval lastPositive = null;
+		for (int i = 0; i < lines.getCount(); i++) {
+			// sensor ID starts from 1
+			int sensorId = i + 1;
+			double[] intervals = getLineIntervals(lines, i, regions, index,
+					builder);
+			if (intervals.length == 0) {
+				if (nPending == pending.length) {
+					pending = Arrays.copyOf(pending, nPending * 2);
+				}
+				pending[nPending++] = sensorId;
+				continue;
+			}
+
+			positives.clear();
+			for (int k = 0; k < intervals.length; k += 2) {
+				positives.add(new SensorInterval(sensorId, lines.getLine(i,
+						intervals[k], intervals[k + 1])));
+			}
+			lastPositive = positives.get(0);
+			for (int k = 0; k < nPending; k++) {
+				negatives.clear();
+				negatives.add(shape.getFullNegativeInterval(lastPositive,
+						sensorId, pending[k], gapInX));
+				listener.sensorIntervals(pending[k],
+						Collections.<SensorInterval> emptyList(), negatives);
+			}
+			nPending = 0;
 
-		// sensor ID initialized to 1
-		int sensorId = 1;
+			negatives.clear();
+			shape.addNegativeIntervals(positives, negatives);
+			listener.sensorIntervals(sensorId, positives, negatives);
+			lastPositive = positives.get(positives.size() - 1);
+		}
 
-		for (Line2D l : parallelLines) {
-			List<Line2D> intersectLines = new ArrayList<Line2D>();
+		// sensors after the last positive interval
+		for (int k = 0; k < nPending; k++) {
+			negatives.clear();
+			if (lastPositive == null) {
+				SensorInterval fullLine = new SensorInterval(pending[k],
+						lines.getLine(pending[k] - 1));
+				negatives.add(new SensorInterval(pending[k], fullLine
+						.getFullInterval(canvasWidth, canvasHeight)));
+			} else {
+				negatives.add(shape.getFullNegativeInterval(lastPositive,
+						lastPositive.getSensorID(), pending[k], gapInX));
+			}
+			listener.sensorIntervals(pending[k],
+					Collections.<SensorInterval> emptyList(), negatives);
+		}
+	}
 
-			// iterate over all sub-regions in the complex region
-			for (Region p : regions) {
-				if (!p.isHole()) {// if sub-region is not a hole, there is a
-									// positive interval
-					intersectLines = GeomUtil.lineRegion(intersectLines, p, l,
-							sensorAngle, canvasHeight, canvasWidth);
-				} else {// otherwise negative interval
-					intersectLines = GeomUtil.lineJumpHole(intersectLines, p,
-							l, sensorAngle, canvasHeight, canvasWidth);
+	/**
+	 * Generate sensor data straight into a positive and a negative file,
+	 * without keeping the intervals in memory
+	 * 
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param positiveFileName
+	 * @param negativeFileName
+	 * @param normalize
+	 *            if the intervals need to be normalized
+	 * @throws Exception
+	 */
+	public static void writeIntervalsToFile(ComplexRegion complexRegion,
+			double gap, double angle, int canvasWidth, int canvasHeight,
+			String positiveFileName, String negativeFileName,
+			boolean normalize) throws Exception {
+		AffineTransform rotate = normalize ? getNormalizeTransform(angle,
+				canvasWidth, canvasHeight) : null;
+		SensorIntervalWriter writer = new SensorIntervalWriter(
+				positiveFileName, negativeFileName, rotate);
+		try {
+			streamIntervals(complexRegion, gap, angle, canvasWidth,
+					canvasHeight, writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Update the intervals after one region has moved or changed. Only the
+	 * sensor lines within the projected extent of the old or the new version
+	 * of the region are recomputed, and their positive and negative intervals
+	 * are spliced into the current ones in place.
+	 * 
+	 * @param regions
+	 *            all regions in layer order, with the new version of the
+	 *            region in place of the old one
+	 * @param oldRegion
+	 *            the region before the change
+	 * @param newRegion
+	 *            the region after the change
+	 * @throws Exception
+	 */
+	public void updateRegion(Region[] regions, Region oldRegion,
+			Region newRegion) throws Exception {
+		updateRegions(regions, new Region[] { oldRegion },
+				new Region[] { newRegion });
+	}
+
+	/**
+	 * Update the intervals after several regions have moved or changed. Each
+	 * sensor line within the projected extent of an old or a new version of
+	 * a changed region is recomputed once.
+	 * 
+	 * @param regions
+	 *            all regions in layer order, with the new versions in place
+	 *            of the old ones
+	 * @param oldRegions
+	 *            the changed regions before the change
+	 * @param newRegions
+	 *            the changed regions after the change
+	 * @throws Exception
+	 */
+	public void updateRegions(Region[] regions, Region[] oldRegions,
+			Region[] newRegions) throws Exception {
+		ParallelLines lines = new ParallelLines(sensorGap, sensorAngle, width,
+				height);
+
+		// mark the lines touched by either version of a changed region
+		boolean[] touched = new boolean[lines.getCount()];
+		Region[][] versions = { oldRegions, newRegions };
+		for (Region[] changed : versions) {
+			ProjectedExtentIndex extents = new ProjectedExtentIndex(changed,
+					lines);
+			for (int r = 0; r < changed.length; r++) {
+				int first = Math.max(0,
+						lines.getFirstIndex(extents.getMinOffset(r)));
+				int last = Math.min(lines.getCount() - 1,
+						lines.getLastIndex(extents.getMaxOffset(r)));
+				for (int i = first; i <= last; i++) {
+					touched[i] = true;
+				}
+			}
+		}
+
+		// recompute each run of touched lines, from the last one so the
+		// splices do not move the runs still to do
+		ProjectedExtentIndex index = new ProjectedExtentIndex(regions, lines);
+		int i = touched.length - 1;
+		while (i >= 0) {
+			if (!touched[i]) {
+				i--;
+				continue;
+			}
+			int last = i;
+			while (i >= 0 && touched[i]) {
+				i--;
+			}
+			updateLines(lines, i + 1, last, regions, index);
+		}
+	}
+
+	/**
+	 * recompute the intervals of a range of sensor lines and splice them in
+	 * 
+	 * @param lines
+	 * @param firstLine
+	 * @param lastLine
+	 * @param regions
+	 * @param index
+	 * @throws Exception
+	 */
+	private void updateLines(ParallelLines lines, int firstLine, int lastLine,
+			Region[] regions, ProjectedExtentIndex index) throws Exception {
+		if (firstLine > lastLine) {
+			return;
+		}
+		positiveIndex = null;
+		negativeIndex = null;
+		positiveLattice = null;
+		negativeLattice = null;
+		positiveGrid = null;
+		negativeGrid = null;
+		positiveRTree = null;
+		negativeRTree = null;
+		coverageIndex = null;
+		CrossingParityBuilder builder = new CrossingParityBuilder();
+
+		if (positiveLineIntervals != null) {
+			SensorLineIntervals positives = new SensorLineIntervals(lines);
+			SensorLineIntervals negatives = new SensorLineIntervals(lines);
+			for (int i = firstLine; i <= lastLine; i++) {
+				double[] intervals = getLineIntervals(lines, i, regions, index,
+						builder);
+				for (int k = 0; k < intervals.length; k += 2) {
+					positives.add(i + 1, intervals[k], intervals[k + 1]);
 				}
 			}
-			for (Line2D il : intersectLines) {
-				SensorInterval positiveInterval = new SensorInterval(sensorId,
-						il);
-				positiveIntervals.add(positiveInterval);
+			positives.addComplement(negatives, firstLine, lastLine);
+
+			positiveLineIntervals.splice(
+					positiveLineIntervals.indexOfSensor(firstLine + 1),
+					positiveLineIntervals.indexOfSensor(lastLine + 2),
+					positives);
+			if (negativesDerived) {
+				negativeLineIntervals.splice(
+						negativeLineIntervals.indexOfSensor(firstLine + 1),
+						negativeLineIntervals.indexOfSensor(lastLine + 2),
+						negatives);
+			}
+			return;
+		}
+
+		// derive negatives of each sensor the same way as
+		// addNegativeIntervalsFromPositive
+		List<SensorInterval> positives = new ArrayList<SensorInterval>();
+		List<SensorInterval> negatives = new ArrayList<SensorInterval>();
+		List<SensorInterval> intervalsInSameSensor = new ArrayList<SensorInterval>();
+		for (int i = firstLine; i <= lastLine; i++) {
+			double[] intervals = getLineIntervals(lines, i, regions, index,
+					builder);
+			intervalsInSameSensor.clear();
+			for (int k = 0; k < intervals.length; k += 2) {
+				intervalsInSameSensor.add(new SensorInterval(i + 1, lines
+						.getLine(i, intervals[k], intervals[k + 1])));
+			}
+			positives.addAll(intervalsInSameSensor);
+			if (positiveStore == null || !negativesDerived) {
+				// negatives of list storage are derived again when read
+				continue;
 			}
-			sensorId++;
+			if (intervalsInSameSensor.isEmpty()) {
+				SensorInterval fullLine = new SensorInterval(i + 1,
+						lines.getLine(i));
+				negatives.add(new SensorInterval(i + 1, fullLine
+						.getFullInterval(width, height)));
+			} else {
+				addNegativeIntervals(intervalsInSameSensor, negatives);
+			}
+		}
+
+		if (positiveStore != null) {
+			SensorIntervalStore positiveInsert = new SensorIntervalStore(
+					positives.size());
+			SensorIntervalStore negativeInsert = new SensorIntervalStore(
+					negatives.size());
+			for (SensorInterval si : positives) {
+				positiveInsert.add(si);
+			}
+			for (SensorInterval si : negatives) {
+				negativeInsert.add(si);
+			}
+			positiveStore.splice(positiveStore.indexOfSensor(firstLine + 1),
+					positiveStore.indexOfSensor(lastLine + 2), positiveInsert);
+			if (negativesDerived) {
+				negativeStore.splice(negativeStore.indexOfSensor(firstLine + 1),
+						negativeStore.indexOfSensor(lastLine + 2),
+						negativeInsert);
+			}
+		} else {
+			splice(positiveIntervals, firstLine + 1, lastLine + 1, positives);
+			positivesModCount++;
+			negativesDerived = false;
+			negativeIntervals = null;
+		}
+	}
+
+	/**
+	 * replace the intervals of a range of sensors in a list ordered by sensor
+	 * id
+	 * 
+	 * @param intervals
+	 * @param firstId
+	 * @param lastId
+	 * @param insert
+	 */
+	private static void splice(List<SensorInterval> intervals, int firstId,
+			int lastId, List<SensorInterval> insert) {
+		int from = indexOfSensor(intervals, firstId);
+		int to = indexOfSensor(intervals, lastId + 1);
+		intervals.subList(from, to).clear();
+		intervals.addAll(from, insert);
+	}
+
+	/**
+	 * index of the first interval whose sensor id is not smaller than the
+	 * given one, in a list ordered by sensor id
+	 * 
+	 * @param intervals
+	 * @param sensorId
+	 * @return
+	 */
+	private static int indexOfSensor(List<SensorInterval> intervals,
+			int sensorId) {
+		int lo = 0, hi = intervals.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (intervals.get(mid).getSensorID() < sensorId) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * set up the sensor parameters and the storage of intervals
+	 * 
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @param storage
+	 * @return the set of parallel lines to fill the canvas
+	 */
+	private ParallelLines initStorage(double gap, double angle,
+			int canvasWidth, int canvasHeight, int storage) {
+		ParallelLines lines = new ParallelLines(gap, angle, canvasWidth,
+				canvasHeight);
+
+		if (storage == STORE_ARRAYS) {
+			positiveStore = new SensorIntervalStore();
+			negativeStore = new SensorIntervalStore();
+			positiveIntervals = positiveStore.asList();
+			negativeIntervals = negativeStore.asList();
+		} else if (storage == STORE_PARAMETRIC) {
+			positiveLineIntervals = new SensorLineIntervals(lines);
+			negativeLineIntervals = new SensorLineIntervals(lines);
+			positiveIntervals = positiveLineIntervals.asList();
+			negativeIntervals = negativeLineIntervals.asList();
+		} else {
+			positiveIntervals = new ArrayList<SensorInterval>();
+		}
+		sensorAngle = angle;
+		sensorGap = gap;
+		sensorCount = lines.getCount();
+		width = canvasWidth;
+		height = canvasHeight;
+		return lines;
+	}
+
+	/**
+	 * add the positive intervals of a sweep to the storage in use
+	 * 
+	 * @param sweep
+	 */
+	private void addSweepIntervals(SensorSweep sweep) {
+		if (positiveStore != null) {
+			sweep.addPositiveIntervals(positiveStore);
+		} else if (positiveLineIntervals != null) {
+			sweep.addPositiveIntervals(positiveLineIntervals);
+		} else {
+			sweep.addPositiveIntervals(positiveIntervals);
+		}
+	}
+
+	/**
+	 * trim the storage once all positive intervals are added
+	 */
+	private void trimToSize() {
+		if (positiveLineIntervals != null) {
+			positiveLineIntervals.sortWithinSensors();
+			positiveLineIntervals.trimToSize();
+		} else if (positiveStore != null) {
+			positiveStore.trimToSize();
+		}
+	}
+
+	/**
+	 * derive the negative intervals from the positive ones, unless they are
+	 * derived already
+	 */
+	private void deriveNegativeIntervals() {
+		if (negativesDerived) {
+			return;
 		}
 
-		negativeIntervals = getNegativeIntervalsFromPositive();
+		if (positiveLineIntervals != null) {
+			// negatives are the complement of positives along each line
+			negativeLineIntervals.clear();
+			positiveLineIntervals.sortWithinSensors();
+			positiveLineIntervals.addComplement(negativeLineIntervals);
+			negativeLineIntervals.trimToSize();
+		} else if (positiveStore != null) {
+			negativeStore.clear();
+			addNegativeIntervalsFromPositive(negativeIntervals, null);
+			negativeStore.trimToSize();
+		} else {
+			NegativeIntervalList negatives = new NegativeIntervalList();
+			addNegativeIntervalsFromPositive(negatives.partial, negatives);
+			negativeIntervals = negatives;
+		}
+		negativesDerived = true;
+	}
 
+	/**
+	 * intersect one sensor line with the sub-regions in the complex region
+	 * whose projected extent contains it
+	 * 
+	 * @param lines
+	 * @param index
+	 *            index of the line, sensor id - 1
+	 * @param regions
+	 * @param extents
+	 *            projected extents of the regions on the lines
+	 * @param builder
+	 *            builder to collect the crossings, reset before use
+	 * @return positive intervals as sorted start/end parameter pairs
+	 * @throws Exception
+	 */
+	private static double[] getLineIntervals(ParallelLines lines, int index,
+			Region[] regions, ProjectedExtentIndex extents,
+			CrossingParityBuilder builder) throws Exception {
+		double ox = lines.getTopX(index);
+		double ux = lines.getCos(), uy = lines.getSin();
+
+		// collect crossings with the sub-regions the line may hit, then
+		// sweep them once. Crossings are kept as line parameters, two
+		// crossings that round to the same point still cancel each other.
+		builder.reset();
+		for (int k = 0; k < extents.getRegionCount(index); k++) {
+			int r = extents.getRegion(index, k);
+			double[] crossings = PathIntersector.getCrossings(
+					regions[r].getShape(), ox, 0, ux, uy);
+			for (double t : crossings) {
+				builder.addCrossing(lines.getParam(ox + t * ux, t * uy), r,
+						regions[r].getLayer());
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * intersect all sensor lines with the regions on a pool of threads. The
+	 * lines are split into contiguous blocks, each block is handled by one
+	 * task with its own builder, and the result of line i is stored at index
+	 * i, so the caller reads them back in sensor id order.
+	 * 
+	 * @param lines
+	 * @param regions
+	 * @param extents
+	 *            projected extents of the regions on the lines
+	 * @param nThreads
+	 *            number of threads the blocks are sized for
+	 * @param executor
+	 *            executor to run the blocks on, null for a pool of nThreads
+	 *            threads of its own
+	 * @return positive intervals of each line as sorted start/end parameter
+	 *         pairs
+	 * @throws Exception
+	 */
+	private static double[][] getLineIntervals(final ParallelLines lines,
+			final Region[] regions, final ProjectedExtentIndex extents,
+			int nThreads, ExecutorService executor) throws Exception {
+		final double[][] intervals = new double[lines.getCount()][];
+
+		// a few blocks per thread to even out lines of different cost
+		int nBlocks = Math.min(lines.getCount(), Math.max(1, nThreads) * 4);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int b = 0; b < nBlocks; b++) {
+			final int from = (int) ((long) lines.getCount() * b / nBlocks);
+			final int to = (int) ((long) lines.getCount() * (b + 1) / nBlocks);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					CrossingParityBuilder builder = new CrossingParityBuilder();
+					for (int i = from; i < to; i++) {
+						intervals[i] = getLineIntervals(lines, i, regions,
+								extents, builder);
+					}
+					return null;
+				}
+			});
+		}
+
+		if (executor != null) {
+			invokeAll(executor, tasks);
+			return intervals;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				nThreads));
+		try {
+			invokeAll(pool, tasks);
+		} finally {
+			pool.shutdown();
+		}
+		return intervals;
+	}
+
+	/**
+	 * run tasks on an executor and wait for all of them, rethrowing the
+	 * exception of the first task that failed
+	 * 
+	 * @param executor
+	 * @param tasks
+	 * @throws Exception
+	 */
+	private static void invokeAll(ExecutorService executor,
+			List<Callable<Object>> tasks) throws Exception {
+		for (Future<Object> f : executor.invokeAll(tasks)) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * add the positive intervals of one sensor line
+	 * 
+	 * @param lines
+	 * @param index
+	 *            index of the line, sensor id - 1
+	 * @param intervals
+	 *            sorted start/end parameter pairs
+	 */
+	private void addLineIntervals(ParallelLines lines, int index,
+			double[] intervals) {
+		// sensor ID starts from 1
+		for (int k = 0; k < intervals.length; k += 2) {
+			positiveIntervals.add(new SensorInterval(index + 1, lines.getLine(
+					index, intervals[k], intervals[k + 1])));
+		}
 	}
 
 	/**
@@ -127,7 +1072,6 @@ public class SensorData {
 
 		// initialize variables
 		positiveIntervals = new ArrayList<SensorInterval>();
-		negativeIntervals = new ArrayList<SensorInterval>();
 		sensorAngle = Double.NaN; // initiated at NaN
 		sensorGap = Double.NaN; // initiated at NaN
 		sensorCount = Integer.MIN_VALUE; // initiated at min value
@@ -141,10 +1085,9 @@ public class SensorData {
 			System.exit(-1);
 		}
 
-		BufferedReader reader = null;
+		SensorTextParser parser = null;
 		try {
-			reader = new BufferedReader(new FileReader(file));
-			String sensorData = null;
+			parser = new SensorTextParser(new FileReader(file));
 			int sensorId = -1;
 
 			boolean sensorGapSet = false;
@@ -158,10 +1101,10 @@ public class SensorData {
 			// Read each line
 			// Each line is a single positive component of the format:
 			// Sensor(\d+) [startPt.x,startPt.y] [endPt.x, endPt.y]
-			while ((sensorData = reader.readLine()) != null) {
+			while (parser.next()) {
 
 				// create new sensor interval
-				SensorInterval newInterval = new SensorInterval(sensorData);
+				SensorInterval newInterval = parser.getInterval();
 
 				// add the interval to data
 				addPositiveInterval(newInterval);
@@ -218,9 +1161,6 @@ public class SensorData {
 			// update sensor count
 			sensorCount = maxSensor;
 
-			// Derive negative intervals
-			negativeIntervals = getNegativeIntervalsFromPositive();
-
 			// Print sensor data information
 			System.out.println("File " + sensorFileName + " read.");
 			System.out.println("Sensor count" + sensorCount);
@@ -228,6 +1168,14 @@ public class SensorData {
 			System.out.println("Sensor gap " + sensorGap);
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
 		}
 	}
 
@@ -238,6 +1186,17 @@ public class SensorData {
 	 */
 	public void addPositiveInterval(SensorInterval positiveInterval) {
 		positiveIntervals.add(positiveInterval);
+		positivesModCount++;
+		negativesDerived = false;
+		positiveIndex = null;
+		negativeIndex = null;
+		positiveLattice = null;
+		negativeLattice = null;
+		positiveGrid = null;
+		negativeGrid = null;
+		positiveRTree = null;
+		negativeRTree = null;
+		coverageIndex = null;
 	}
 
 	// public method for reading variables in the class
@@ -251,10 +1210,60 @@ public class SensorData {
 		return positiveIntervals;
 	}
 
+	/**
+	 * read list of negative intervals, derived from the positive intervals on
+	 * the first call and kept until addPositiveInterval is called. The list
+	 * can not be modified.
+	 * 
+	 * @return
+	 */
 	public List<SensorInterval> getNegativeIntervals() {
+		deriveNegativeIntervals();
 		return negativeIntervals;
 	}
 
+	/**
+	 * read the primitive storage of positive intervals
+	 * 
+	 * @return null unless constructed with STORE_ARRAYS
+	 */
+	public SensorIntervalStore getPositiveStore() {
+		return positiveStore;
+	}
+
+	/**
+	 * read the primitive storage of negative intervals
+	 * 
+	 * @return null unless constructed with STORE_ARRAYS
+	 */
+	public SensorIntervalStore getNegativeStore() {
+		if (negativeStore != null) {
+			deriveNegativeIntervals();
+		}
+		return negativeStore;
+	}
+
+	/**
+	 * read the parametric storage of positive intervals
+	 * 
+	 * @return null unless constructed with STORE_PARAMETRIC
+	 */
+	public SensorLineIntervals getPositiveLineIntervals() {
+		return positiveLineIntervals;
+	}
+
+	/**
+	 * read the parametric storage of negative intervals
+	 * 
+	 * @return null unless constructed with STORE_PARAMETRIC
+	 */
+	public SensorLineIntervals getNegativeLineIntervals() {
+		if (negativeLineIntervals != null) {
+			deriveNegativeIntervals();
+		}
+		return negativeLineIntervals;
+	}
+
 	/**
 	 * read angle of intervals in atan2
 	 * 
@@ -264,6 +1273,42 @@ public class SensorData {
 		return sensorAngle;
 	}
 
+	/**
+	 * read distance between adjacent sensors
+	 * 
+	 * @return
+	 */
+	public double getGap() {
+		return sensorGap;
+	}
+
+	/**
+	 * read number of sensors
+	 * 
+	 * @return
+	 */
+	public int getSensorCount() {
+		return sensorCount;
+	}
+
+	/**
+	 * read width of the canvas
+	 * 
+	 * @return
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * read height of the canvas
+	 * 
+	 * @return
+	 */
+	public int getHeight() {
+		return height;
+	}
+
 	/**
 	 * read list of coordinates that make up the positive intervals
 	 * 
@@ -283,75 +1328,101 @@ public class SensorData {
 	/**
 	 * work out list of negative intervals from positiveIntervals
 	 * 
-	 * @return negative intervals
+	 * @return negative intervals, the same list as getNegativeIntervals
 	 */
 	public List<SensorInterval> getNegativeIntervalsFromPositive() {
+		return getNegativeIntervals();
+	}
+
+	/**
+	 * work out negative intervals from positiveIntervals, which are ordered
+	 * by sensor id. A sensor without positive intervals is one full negative
+	 * interval, shifted from the next positive interval or from the last one.
+	 * 
+	 * @param negIntervals
+	 *            list the negative intervals are added to
+	 * @param fullLines
+	 *            if not null, the full negative intervals are not added to
+	 *            negIntervals but recorded in fullLines, which is backed by
+	 *            negIntervals
+	 */
+	private void addNegativeIntervalsFromPositive(
+			List<SensorInterval> negIntervals, NegativeIntervalList fullLines) {
 
-		List<SensorInterval> negIntervals = new ArrayList<SensorInterval>();
 		List<SensorInterval> intervalsInSameSensor = new ArrayList<SensorInterval>();
 
 		// gap between two adjacent sensor against x axis
 		double gapInX = Math.abs(sensorGap / Math.sin(sensorAngle));
 
-		// Sensor id starts from 1
-		int prevIntervalID = 1;
-
-		for (int i = 0; i < positiveIntervals.size(); i++) {
-
-			SensorInterval curInterval = positiveIntervals.get(i);
-			int curIntervalID = curInterval.getSensorID();
-
-			// If it's a new interval
-			if (curIntervalID != prevIntervalID) {
-
-				if (prevIntervalID != 1) {// if current interval is not from
-											// first interval
-					// add negative intervals from previous sensor
-					addNegativeIntervals(intervalsInSameSensor, negIntervals);
-					prevIntervalID++;
-				}
-
-				// write the full negative sensors
-				while (prevIntervalID < curIntervalID) {
-					addFullnegativeInterval(curInterval, curIntervalID,
-							prevIntervalID, gapInX, negIntervals);
-					prevIntervalID++;
-				}
-
-				// clear for the new interval
-				intervalsInSameSensor.clear();
-				intervalsInSameSensor.add(curInterval);
-			}
+		int nPositives = positiveIntervals.size();
+		int lastID = sensorCount;
+		if (nPositives > 0) {
+			lastID = Math.max(lastID,
+					positiveIntervals.get(nPositives - 1).getSensorID());
+		} else if (Double.isNaN(sensorGap)) {
+			// no interval to derive the sensor lines from
+			return;
+		}
 
-			else {
-				intervalsInSameSensor.add(curInterval);
+		// Sensor id starts from 1
+		int i = 0;
+		for (int id = 1; id <= lastID; id++) {
+			intervalsInSameSensor.clear();
+			while (i < nPositives
+					&& positiveIntervals.get(i).getSensorID() == id) {
+				intervalsInSameSensor.add(positiveIntervals.get(i));
+				i++;
 			}
 
-			if (i == positiveIntervals.size() - 1) {
+			if (!intervalsInSameSensor.isEmpty()) {
+				int from = negIntervals.size();
 				addNegativeIntervals(intervalsInSameSensor, negIntervals);
+				if (fullLines != null) {
+					fullLines.addPartial(from, negIntervals.size());
+				}
+			} else {
+				// the next positive interval, or the last one, -1 if none
+				int ref = Math.min(i, nPositives - 1);
+				if (fullLines != null) {
+					fullLines.addFullLine(id, ref, gapInX);
+				} else {
+					negIntervals.add(getFullNegativeInterval(ref, id, gapInX));
+				}
 			}
-			prevIntervalID = curIntervalID;
 		}
+	}
 
-		// add negatives after the last positive interval
-		if (prevIntervalID < sensorCount) {
-			SensorInterval lastPositiveInterval = positiveIntervals
-					.get(positiveIntervals.size() - 1);
-			int lastPositiveID = lastPositiveInterval.getSensorID();
-
-			while (prevIntervalID < sensorCount) {
-				prevIntervalID++;
-				// add full negative sensors
-				addFullnegativeInterval(lastPositiveInterval, lastPositiveID,
-						prevIntervalID, gapInX, negIntervals);
-			}
+	/**
+	 * the full negative interval of a sensor without positive intervals
+	 * 
+	 * @param ref
+	 *            index of the positive interval to shift it from, -1 to take
+	 *            it from the sensor lines
+	 * @param sensorID
+	 * @param gapInX
+	 * @return
+	 */
+	private SensorInterval getFullNegativeInterval(int ref, int sensorID,
+			double gapInX) {
+		if (ref < 0) {
+			ParallelLines lines = new ParallelLines(sensorGap, sensorAngle,
+					width, height);
+			SensorInterval fullLine = new SensorInterval(sensorID,
+					lines.getLine(sensorID - 1));
+			return new SensorInterval(sensorID, fullLine.getFullInterval(width,
+					height));
 		}
-
-		return negIntervals;
+		SensorInterval curInterval = positiveIntervals.get(ref);
+		return getFullNegativeInterval(curInterval, curInterval.getSensorID(),
+				sensorID, gapInX);
 	}
-
 	/**
-	 * get negative intervals from positive ones of a sensor
+	 * get negative intervals from positive ones of a sensor, as the gaps
+	 * between them along the full sensor line. The positive intervals are
+	 * projected onto the direction of the sensor and walked once in order;
+	 * they are only sorted if they are not already ordered along the sensor.
+	 * Positive intervals that overlap, which can come from a file, are
+	 * merged in an IntervalSet first so no negative interval runs backwards.
 	 * 
 	 * @param intervalsInSameSensor
 	 *            a set of intervals that belong to the same sensor
@@ -360,72 +1431,131 @@ public class SensorData {
 	public void addNegativeIntervals(
 			List<SensorInterval> intervalsInSameSensor,
 			List<SensorInterval> negIntervals) {
-		List<Point2D> ptsOnFullSensor = new ArrayList<Point2D>();
-		Line2D fullInterval;
-		int sensorID;
-
-		// rotate the points to ensure they can be sorted vertically
-		AffineTransform rotate = new AffineTransform();
-		rotate.rotate(Math.PI / 2 - sensorAngle, width / 2, height / 2);
-
-		// rotate inverse
-		AffineTransform rotateInverse = new AffineTransform();
-		rotateInverse.rotate(sensorAngle - Math.PI / 2, width / 2, height / 2);
+		int n = intervalsInSameSensor.size();
 
 		// derive the full sensor from a positive interval
-		fullInterval = intervalsInSameSensor.get(0).getFullInterval(width,
-				height);
-
-		sensorID = intervalsInSameSensor.get(0).getSensorID();
-
-		// add the start and end points of the full interval
-		ptsOnFullSensor.add(fullInterval.getP1());
-		ptsOnFullSensor.add(fullInterval.getP2());
-
-		// add all other points from positive intervals
-		for (SensorInterval si : intervalsInSameSensor) {
-
-			ptsOnFullSensor.add(si.getStart());
-			ptsOnFullSensor.add(si.getEnd());
+		Line2D fullInterval = getFullInterval(intervalsInSameSensor.get(0));
+		int sensorID = intervalsInSameSensor.get(0).getSensorID();
+
+		// parameters along the direction of the sensor
+		double ux = Math.cos(sensorAngle), uy = Math.sin(sensorAngle);
+		double ox = fullInterval.getX1(), oy = fullInterval.getY1();
+		double fullEnd = (fullInterval.getX2() - ox) * ux
+				+ (fullInterval.getY2() - oy) * uy;
+
+		// start and end of each positive interval, in the order of the sensor
+		Point2D[] starts = new Point2D[n];
+		Point2D[] ends = new Point2D[n];
+		double[] params = new double[n];
+		double[] endParams = new double[n];
+		boolean sorted = true;
+		for (int i = 0; i < n; i++) {
+			Line2D l = intervalsInSameSensor.get(i).getInterval();
+			double t1 = (l.getX1() - ox) * ux + (l.getY1() - oy) * uy;
+			double t2 = (l.getX2() - ox) * ux + (l.getY2() - oy) * uy;
+			boolean forward = t1 <= t2;
+			starts[i] = forward ? l.getP1() : l.getP2();
+			ends[i] = forward ? l.getP2() : l.getP1();
+			params[i] = Math.min(t1, t2);
+			endParams[i] = Math.max(t1, t2);
+			if (i > 0 && params[i] < params[i - 1]) {
+				sorted = false;
+			}
 		}
-
-		for (int j = 0; j < ptsOnFullSensor.size(); j++) {
-			Point2D pt = ptsOnFullSensor.get(j);
-			pt = rotate.transform(pt, null);
-			ptsOnFullSensor.set(j, pt);
+		if (!sorted) {
+			sortAlongSensor(params, endParams, starts, ends);
 		}
 
-		// sort the points vertically
-		for (int m = 0; m < ptsOnFullSensor.size() - 1; m++) {
-			for (int n = ptsOnFullSensor.size() - 1; n > 0; n--) {
-				if (ptsOnFullSensor.get(n).getY() < ptsOnFullSensor.get(n - 1)
-						.getY()) {
-					Point2D temPt = ptsOnFullSensor.get(n);
-					ptsOnFullSensor.set(n, ptsOnFullSensor.get(n - 1));
-					ptsOnFullSensor.set(n - 1, temPt);
-				}
+		// the full sensor line may run against the direction of the sensor
+		Point2D from = fullEnd >= 0 ? fullInterval.getP1() : fullInterval
+				.getP2();
+		Point2D to = fullEnd >= 0 ? fullInterval.getP2() : fullInterval
+				.getP1();
+
+		double maxEnd = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			if (params[i] < maxEnd) {
+				addMergedNegativeIntervals(sensorID, params, endParams, from,
+						to, fullEnd, negIntervals);
+				return;
 			}
+			maxEnd = Math.max(maxEnd, endParams[i]);
 		}
 
 		// add negative intervals
-		boolean hasP1 = false, hasP2 = false;
-		Point2D s = null, e = null;
-		for (Point2D pt : ptsOnFullSensor) {
-			pt = rotateInverse.transform(pt, null);
-			if (!hasP1) {
-				s = pt;
-				hasP1 = true;
-			} else if (!hasP2) {
-				e = pt;
-				hasP2 = true;
-			}
+		for (int i = 0; i < n; i++) {
+			negIntervals.add(new SensorInterval(sensorID, from, starts[i]));
+			from = ends[i];
+		}
+		negIntervals.add(new SensorInterval(sensorID, from, to));
+	}
+
+	/**
+	 * add the gaps between overlapping positive intervals of a sensor, as
+	 * the complement of their union along the full sensor line
+	 * 
+	 * @param sensorID
+	 * @param params
+	 *            start of each positive interval along the sensor
+	 * @param endParams
+	 *            end of each positive interval along the sensor
+	 * @param from
+	 *            start of the full sensor line
+	 * @param to
+	 *            end of the full sensor line
+	 * @param fullEnd
+	 *            parameter of the end of the full line, from its first point
+	 * @param negIntervals
+	 */
+	private void addMergedNegativeIntervals(int sensorID, double[] params,
+			double[] endParams, Point2D from, Point2D to, double fullEnd,
+			List<SensorInterval> negIntervals) {
+		IntervalSet positives = new IntervalSet();
+		for (int i = 0; i < params.length; i++) {
+			positives.add(params[i], endParams[i]);
+		}
+
+		// parameters are measured from the first point of the full line,
+		// which is from or to
+		double lo = Math.min(0, fullEnd), hi = Math.max(0, fullEnd);
+		double ux = hi > lo ? (to.getX() - from.getX()) / (hi - lo) : 0;
+		double uy = hi > lo ? (to.getY() - from.getY()) / (hi - lo) : 0;
+		for (double[] gap : positives.complement(lo, hi)) {
+			Point2D start = gap[0] == lo ? from : new Point2D.Double(
+					from.getX() + (gap[0] - lo) * ux, from.getY()
+							+ (gap[0] - lo) * uy);
+			Point2D end = gap[1] == hi ? to : new Point2D.Double(from.getX()
+					+ (gap[1] - lo) * ux, from.getY() + (gap[1] - lo) * uy);
+			negIntervals.add(new SensorInterval(sensorID, start, end));
+		}
+	}
 
-			// add a negative interval
-			if (hasP1 && hasP2) {
-				negIntervals.add(new SensorInterval(sensorID, s, e));
-				hasP1 = false;
-				hasP2 = false;
+	/**
+	 * insertion sort of positive intervals by their parameter along the
+	 * sensor
+	 * 
+	 * @param params
+	 * @param endParams
+	 * @param starts
+	 * @param ends
+	 */
+	private static void sortAlongSensor(double[] params, double[] endParams,
+			Point2D[] starts, Point2D[] ends) {
+		for (int i = 1; i < params.length; i++) {
+			double t = params[i], te = endParams[i];
+			Point2D s = starts[i], e = ends[i];
+			int j = i - 1;
+			while (j >= 0 && params[j] > t) {
+				params[j + 1] = params[j];
+				endParams[j + 1] = endParams[j];
+				starts[j + 1] = starts[j];
+				ends[j + 1] = ends[j];
+				j--;
 			}
+			params[j + 1] = t;
+			endParams[j + 1] = te;
+			starts[j + 1] = s;
+			ends[j + 1] = e;
 		}
 	}
 
@@ -442,6 +1572,24 @@ public class SensorData {
 	public void addFullnegativeInterval(SensorInterval curInterval,
 			int curIntervalID, int prevIntervalID, double gapInX,
 			List<SensorInterval> negIntervals) {
+		// create full negative interval on this sensorID.
+		negIntervals.add(getFullNegativeInterval(curInterval, curIntervalID,
+				prevIntervalID, gapInX));
+	}
+
+	/**
+	 * a full negative interval, shifted from an interval of another sensor
+	 * 
+	 * @param curInterval
+	 * @param curIntervalID
+	 * @param prevIntervalID
+	 *            id of the sensor of the full negative interval
+	 * @param gapInX
+	 *            gap between two adjacent intervals corresponding to x axis
+	 * @return
+	 */
+	private SensorInterval getFullNegativeInterval(SensorInterval curInterval,
+			int curIntervalID, int prevIntervalID, double gapInX) {
 		// calculate shifted points of a full negative interval from
 		// current interval
 		double shiftedStartX = curInterval.getInterval().getX1()
@@ -457,13 +1605,107 @@ public class SensorData {
 		// derive a full negative interval
 		SensorInterval shiftedNegativeInterval = new SensorInterval(
 				prevIntervalID, shiftedStart, shiftedEnd);
-		Line2D fullNegativeLine = shiftedNegativeInterval.getFullInterval(
-				width, height);
-		SensorInterval fullNegativeInterval = new SensorInterval(
-				prevIntervalID, fullNegativeLine);
+		Line2D fullNegativeLine = getFullInterval(shiftedNegativeInterval);
+		return new SensorInterval(prevIntervalID, fullNegativeLine);
+	}
 
-		// create full negative interval on this sensorID.
-		negIntervals.add(fullNegativeInterval);
+	/**
+	 * the part of the sensor line of an interval within the canvas. The
+	 * direction of a very short interval is mostly rounding error, so it is
+	 * taken from the sensor angle when the angle is known.
+	 * 
+	 * @param interval
+	 * @return
+	 */
+	private Line2D getFullInterval(SensorInterval interval) {
+		if (Double.isNaN(sensorAngle)) {
+			return interval.getFullInterval(width, height);
+		}
+		Point2D start = interval.getStart();
+		Point2D end = new Point2D.Double(start.getX() + Math.cos(sensorAngle),
+				start.getY() + Math.sin(sensorAngle));
+		return new SensorInterval(interval.getSensorID(), start, end)
+				.getFullInterval(width, height);
+	}
+
+	/**
+	 * Negative intervals of list storage, in the order of the sensors. The
+	 * negatives of sensors with positive intervals are kept in partial, a
+	 * sensor without any is a full negative interval made when it is read,
+	 * see getFullNegativeInterval. Reading it after the positive intervals
+	 * have changed throws a ConcurrentModificationException.
+	 */
+	private class NegativeIntervalList extends AbstractList<SensorInterval> {
+		// negatives of the sensors with positive intervals
+		private List<SensorInterval> partial = new ArrayList<SensorInterval>();
+
+		// entry k >= 0 is partial.get(k), entry -1 - k is the full negative
+		// interval of sensor fullIDs[k], shifted from positive interval
+		// fullRefs[k]
+		private int[] entries = new int[16];
+		private int size;
+		private int[] fullIDs = new int[16];
+		private int[] fullRefs = new int[16];
+		private int nFull;
+		private double gapInX;
+
+		// positivesModCount when the list was derived
+		private final int expectedModCount = positivesModCount;
+
+		/**
+		 * add the negatives partial.get(from) to partial.get(to - 1)
+		 */
+		private void addPartial(int from, int to) {
+			for (int k = from; k < to; k++) {
+				addEntry(k);
+			}
+		}
+
+		/**
+		 * add the full negative interval of a sensor
+		 */
+		private void addFullLine(int sensorID, int ref, double gapInX) {
+			if (nFull == fullIDs.length) {
+				fullIDs = Arrays.copyOf(fullIDs, nFull * 2);
+				fullRefs = Arrays.copyOf(fullRefs, nFull * 2);
+			}
+			fullIDs[nFull] = sensorID;
+			fullRefs[nFull] = ref;
+			this.gapInX = gapInX;
+			addEntry(-1 - nFull);
+			nFull++;
+		}
+
+		private void addEntry(int entry) {
+			if (size == entries.length) {
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			entries[size++] = entry;
+		}
+
+		@Override
+		public SensorInterval get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index
+						+ ", Size: " + size);
+			}
+			if (positivesModCount != expectedModCount) {
+				throw new ConcurrentModificationException(
+						"Positive intervals changed after the negative "
+								+ "intervals were derived");
+			}
+			int entry = entries[index];
+			if (entry >= 0) {
+				return partial.get(entry);
+			}
+			return getFullNegativeInterval(fullRefs[-1 - entry],
+					fullIDs[-1 - entry], gapInX);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
 	}
 
 	/**
@@ -655,6 +1897,311 @@ public class SensorData {
 		}
 	}
 
+	/**
+	 * read the index of the positive intervals, built on the first call
+	 * 
+	 * @return
+	 */
+	public ParallelIntervalIndex getPositiveIndex() {
+		if (positiveIndex == null) {
+			positiveIndex = new ParallelIntervalIndex(positiveIntervals,
+					sensorAngle);
+		}
+		return positiveIndex;
+	}
+
+	/**
+	 * read the index of the negative intervals, built on the first call
+	 * 
+	 * @return
+	 */
+	public ParallelIntervalIndex getNegativeIndex() {
+		if (negativeIndex == null) {
+			negativeIndex = new ParallelIntervalIndex(getNegativeIntervals(),
+					sensorAngle);
+		}
+		return negativeIndex;
+	}
+
+	/**
+	 * read the lattice index of the positive intervals, built on the first
+	 * call
+	 * 
+	 * @return
+	 */
+	public SensorLatticeIndex getPositiveLattice() {
+		if (positiveLattice == null) {
+			positiveLattice = new SensorLatticeIndex(positiveIntervals,
+					sensorAngle, sensorGap);
+		}
+		return positiveLattice;
+	}
+
+	/**
+	 * read the lattice index of the negative intervals, built on the first
+	 * call
+	 * 
+	 * @return
+	 */
+	public SensorLatticeIndex getNegativeLattice() {
+		if (negativeLattice == null) {
+			negativeLattice = new SensorLatticeIndex(getNegativeIntervals(),
+					sensorAngle, sensorGap);
+		}
+		return negativeLattice;
+	}
+
+	/**
+	 * read the uniform grid of the positive intervals over the canvas, built
+	 * on the first call. The indices it finds are indices in
+	 * getPositiveIntervals.
+	 * 
+	 * @return
+	 */
+	public IntervalGrid getPositiveGrid() {
+		if (positiveGrid == null) {
+			positiveGrid = new IntervalGrid(positiveIntervals, width, height);
+		}
+		return positiveGrid;
+	}
+
+	/**
+	 * read the uniform grid of the negative intervals over the canvas, built
+	 * on the first call. The indices it finds are indices in
+	 * getNegativeIntervals.
+	 * 
+	 * @return
+	 */
+	public IntervalGrid getNegativeGrid() {
+		if (negativeGrid == null) {
+			negativeGrid = new IntervalGrid(getNegativeIntervals(), width,
+					height);
+		}
+		return negativeGrid;
+	}
+
+	/**
+	 * read the R-tree of the positive intervals, built on the first call. The
+	 * indices it finds are indices in getPositiveIntervals.
+	 * 
+	 * @return
+	 */
+	public IntervalRTree getPositiveRTree() {
+		if (positiveRTree == null) {
+			positiveRTree = new IntervalRTree(positiveIntervals);
+		}
+		return positiveRTree;
+	}
+
+	/**
+	 * read the R-tree of the negative intervals, built on the first call. The
+	 * indices it finds are indices in getNegativeIntervals.
+	 * 
+	 * @return
+	 */
+	public IntervalRTree getNegativeRTree() {
+		if (negativeRTree == null) {
+			negativeRTree = new IntervalRTree(getNegativeIntervals());
+		}
+		return negativeRTree;
+	}
+
+	/**
+	 * find the positive intervals that touch a rectangle
+	 * 
+	 * @param window
+	 * @return the intervals, in the order of getPositiveIntervals
+	 */
+	public List<SensorInterval> queryWindow(Rectangle2D window) {
+		int[] found = getPositiveRTree().queryWindow(window.getMinX(),
+				window.getMinY(), window.getMaxX(), window.getMaxY());
+		List<SensorInterval> result = new ArrayList<SensorInterval>(
+				found.length);
+		for (int i : found) {
+			result.add(positiveIntervals.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * find the k positive intervals nearest to a point
+	 * 
+	 * @param pt
+	 * @param k
+	 * @return the intervals, nearest first
+	 */
+	public List<SensorInterval> queryNearest(Point2D pt, int k) {
+		int[] found = getPositiveRTree().queryNearest(pt.getX(), pt.getY(), k);
+		List<SensorInterval> result = new ArrayList<SensorInterval>(
+				found.length);
+		for (int i : found) {
+			result.add(positiveIntervals.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * read the index of the parts of each sensor covered by positive
+	 * intervals, built on the first call
+	 * 
+	 * @return
+	 */
+	public SensorCoverageIndex getCoverageIndex() {
+		if (coverageIndex == null) {
+			coverageIndex = new SensorCoverageIndex(positiveIntervals,
+					sensorAngle);
+		}
+		return coverageIndex;
+	}
+
+	/**
+	 * test if a position on a sensor is covered by a positive interval
+	 * 
+	 * @param sensorId
+	 * @param t
+	 *            position along the sensor, see SensorCoverageIndex.getParam
+	 * @return
+	 */
+	public boolean isPositive(int sensorId, double t) {
+		return getCoverageIndex().isPositive(sensorId, t);
+	}
+
+	/**
+	 * the first start or end of a positive interval of a sensor after a
+	 * position
+	 * 
+	 * @param sensorId
+	 * @param t
+	 *            position along the sensor, see SensorCoverageIndex.getParam
+	 * @return the position of the boundary, Double.POSITIVE_INFINITY if
+	 *         there is none
+	 */
+	public double nextBoundary(int sensorId, double t) {
+		return getCoverageIndex().nextBoundary(sensorId, t);
+	}
+
+	/**
+	 * test if any of a list of intervals intersects an interval in a grid
+	 * 
+	 * @param grid
+	 * @param intervals
+	 * @return
+	 */
+	private static boolean intersectsAny(IntervalGrid grid,
+			List<SensorInterval> intervals) {
+		IntervalGrid.Query query = grid.query();
+		for (int i = 0; i < intervals.size(); i++) {
+			Line2D l = intervals.get(i).getInterval();
+			if (query.intersects(l.getX1(), l.getY1(), l.getX2(), l.getY2())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * test every pair of a list of sensor data for compatibility, see
+	 * getCompatibilityMatrix(List, int, ExecutorService), on a pool of
+	 * threads of its own
+	 * 
+	 * @param data
+	 * @param checkMode
+	 *            CHECK_PAIRWISE, CHECK_SWEEP, CHECK_LATTICE or CHECK_GRID
+	 * @param nThreads
+	 * @return
+	 * @throws Exception
+	 */
+	public static boolean[][] getCompatibilityMatrix(List<SensorData> data,
+			int checkMode, int nThreads) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				nThreads));
+		try {
+			return getCompatibilityMatrix(data, checkMode, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * test every pair of a list of sensor data for compatibility on an
+	 * executor. The negative intervals and the indices the check mode uses
+	 * are built first, one task for each set, so every pair shares them.
+	 * Compatibility is symmetric, so only the pairs i <= j are tested, one
+	 * task for each row i, and each pair stops at its first conflict.
+	 * 
+	 * @param data
+	 * @param checkMode
+	 *            CHECK_PAIRWISE, CHECK_SWEEP, CHECK_LATTICE or CHECK_GRID
+	 * @param executor
+	 *            executor to run the tasks on, not shut down
+	 * @return matrix[i][j] is data.get(i).isCompatible(data.get(j))
+	 * @throws Exception
+	 */
+	public static boolean[][] getCompatibilityMatrix(
+			final List<SensorData> data, final int checkMode,
+			ExecutorService executor) throws Exception {
+		final int n = data.size();
+		final boolean[][] matrix = new boolean[n][n];
+
+		// build what the pairs share, each set by one task
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < n; i++) {
+			final SensorData d = data.get(i);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					d.prepareCompatibility(checkMode);
+					return null;
+				}
+			});
+		}
+		invokeAll(executor, tasks);
+
+		// the sets are only read from here on
+		tasks.clear();
+		for (int i = 0; i < n; i++) {
+			final int row = i;
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					for (int j = row; j < n; j++) {
+						matrix[row][j] = data.get(row).isCompatible(
+								data.get(j), checkMode);
+					}
+					return null;
+				}
+			});
+		}
+		invokeAll(executor, tasks);
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				matrix[i][j] = matrix[j][i];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * build the negative intervals and the indices a check mode uses, so
+	 * isCompatible only reads this set
+	 * 
+	 * @param checkMode
+	 */
+	private void prepareCompatibility(int checkMode) {
+		deriveNegativeIntervals();
+		if (checkMode == CHECK_LATTICE) {
+			getPositiveLattice();
+			getNegativeLattice();
+		} else if (checkMode == CHECK_SWEEP) {
+			getPositiveIndex();
+			getNegativeIndex();
+		} else if (checkMode == CHECK_GRID) {
+			getPositiveGrid();
+			getNegativeGrid();
+		}
+	}
+
 	// tests
 
 	/**
@@ -666,14 +2213,53 @@ public class SensorData {
 	 * @return
 	 */
 	public boolean isCompatible(SensorData otherData) {
+		return isCompatible(otherData, CHECK_PAIRWISE);
+	}
+
+	/**
+	 * test if two SensorData is compatible, see isCompatible(SensorData)
+	 * 
+	 * @param otherData
+	 * @param checkMode
+	 *            CHECK_PAIRWISE, CHECK_SWEEP, CHECK_LATTICE or CHECK_GRID
+	 * @return
+	 */
+	public boolean isCompatible(SensorData otherData, int checkMode) {
+		if (checkMode == CHECK_GRID) {
+			if (intersectsAny(otherData.getNegativeGrid(), positiveIntervals)
+					|| intersectsAny(otherData.getPositiveGrid(),
+							getNegativeIntervals())) {
+				return false;
+			}
+			return intersectsAny(otherData.getPositiveGrid(),
+					positiveIntervals);
+		} else if (checkMode == CHECK_LATTICE) {
+			if (otherData.getNegativeLattice().intersectsAny(positiveIntervals)
+					|| otherData.getPositiveLattice().intersectsAny(
+							getNegativeIntervals())) {
+				return false;
+			}
+			return otherData.getPositiveLattice().intersectsAny(
+					positiveIntervals);
+		} else if (checkMode == CHECK_SWEEP) {
+			// no positive interval may intersect a negative one of the other
+			// set, and at least two positive ones must intersect
+			if (otherData.getNegativeIndex().intersectsAny(positiveIntervals)
+					|| otherData.getPositiveIndex().intersectsAny(
+							getNegativeIntervals())) {
+				return false;
+			}
+			return otherData.getPositiveIndex().intersectsAny(
+					positiveIntervals);
+		}
 
 		boolean positiveIntersect = false;
 
-		List<SensorInterval> thisNegativeIntervals = getNegativeIntervalsFromPositive();
+		List<SensorInterval> thisNegativeIntervals = getNegativeIntervals();
 		List<SensorInterval> otherPositiveIntervals = otherData
 				.getPositiveIntervals();
 		List<SensorInterval> otherNegativeIntervals = otherData
-				.getNegativeIntervalsFromPositive();
+				.getNegativeIntervals();
 
 		for (int i = 0; i < positiveIntervals.size(); i++) {
 			SensorInterval curPositive = positiveIntervals.get(i);
@@ -733,6 +2319,23 @@ public class SensorData {
 		BufferedWriter outNegative = new BufferedWriter(new FileWriter(
 				negativeFileName));
 
+		deriveNegativeIntervals();
+		if (positiveStore != null) {
+			writeIntervals(outPositive, positiveStore, normalize);
+			writeIntervals(outNegative, negativeStore, normalize);
+			outPositive.close();
+			outNegative.close();
+			return;
+		}
+
+		if (positiveLineIntervals != null) {
+			writeIntervals(outPositive, positiveLineIntervals, normalize);
+			writeIntervals(outNegative, negativeLineIntervals, normalize);
+			outPositive.close();
+			outNegative.close();
+			return;
+		}
+
 		for (SensorInterval si : positiveIntervals) {
 			Point2D pt1 = si.getStart();
 			Point2D pt2 = si.getEnd();
@@ -768,6 +2371,98 @@ public class SensorData {
 		outNegative.close();
 	}
 
+	/**
+	 * write intervals of a primitive store, one interval per line
+	 * 
+	 * @param out
+	 * @param store
+	 * @param normalize
+	 *            if the intervals need to be normalized
+	 * @throws IOException
+	 */
+	private void writeIntervals(BufferedWriter out, SensorIntervalStore store,
+			boolean normalize) throws IOException {
+		AffineTransform rotate = normalize ? getNormalizeTransform() : null;
+		double[] pts = new double[4];
+
+		SensorIntervalStore.Cursor c = store.cursor();
+		while (c.next()) {
+			pts[0] = c.getX1();
+			pts[1] = c.getY1();
+			pts[2] = c.getX2();
+			pts[3] = c.getY2();
+			writeInterval(out, c.getSensorID(), pts, rotate);
+		}
+	}
+
+	/**
+	 * write intervals kept as line parameters, one interval per line
+	 * 
+	 * @param out
+	 * @param lineIntervals
+	 * @param normalize
+	 *            if the intervals need to be normalized
+	 * @throws IOException
+	 */
+	private void writeIntervals(BufferedWriter out,
+			SensorLineIntervals lineIntervals, boolean normalize)
+			throws IOException {
+		AffineTransform rotate = normalize ? getNormalizeTransform() : null;
+		double[] pts = new double[4];
+
+		for (int i = 0; i < lineIntervals.size(); i++) {
+			pts[0] = lineIntervals.getX1(i);
+			pts[1] = lineIntervals.getY1(i);
+			pts[2] = lineIntervals.getX2(i);
+			pts[3] = lineIntervals.getY2(i);
+			writeInterval(out, lineIntervals.getSensorID(i), pts, rotate);
+		}
+	}
+
+	/**
+	 * write one interval in the format Sensor(\d+) [x1,y1] [x2,y2]
+	 * 
+	 * @param out
+	 * @param sensorId
+	 * @param pts
+	 *            x1, y1, x2, y2
+	 * @param rotate
+	 *            normalizing transform, null if not normalized
+	 * @throws IOException
+	 */
+	static void writeInterval(BufferedWriter out, int sensorId,
+			double[] pts, AffineTransform rotate) throws IOException {
+		if (rotate != null) {
+			rotate.transform(pts, 0, pts, 0, 2);
+		}
+		out.write("Sensor" + sensorId + " [" + pts[0] + "," + pts[1] + "] ");
+		out.write("[" + pts[2] + "," + pts[3] + "]\n");
+	}
+
+	/**
+	 * the rotation that makes all sensor lines vertical
+	 * 
+	 * @return
+	 */
+	private AffineTransform getNormalizeTransform() {
+		return getNormalizeTransform(sensorAngle, width, height);
+	}
+
+	/**
+	 * the rotation that makes sensor lines of an angle vertical
+	 * 
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @return
+	 */
+	public static AffineTransform getNormalizeTransform(double angle,
+			int canvasWidth, int canvasHeight) {
+		AffineTransform rotate = new AffineTransform();
+		rotate.rotate(-angle + Math.PI / 2, canvasWidth / 2, canvasHeight / 2);
+		return rotate;
+	}
+
 	// tests
 
 	/**
@@ -811,7 +2506,8 @@ public class SensorData {
 				complexRegion.getWidth(), complexRegion.getHeight());
 
 		if (showNeg) {
-			d.addIntervalsToGraphic(g2d, d.negativeIntervals, false, Color.RED);
+			d.addIntervalsToGraphic(g2d, d.getNegativeIntervals(), false,
+					Color.RED);
 		} else {
 			d.addIntervalsToGraphic(g2d, d.positiveIntervals, false,
 					Color.BLACK);
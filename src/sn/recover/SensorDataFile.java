@@ -0,0 +1,285 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Binary file of a set of sensor data, read back through memory-mapped
+ * FileChannel windows.
+ *
+ * The file starts with a header: MAGIC, VERSION and the flags as ints, then
+ * the angle and gap of the sensors as doubles, then the sensor count, canvas
+ * width, canvas height, number of positive intervals and number of negative
+ * intervals as ints. The positive and then the negative intervals follow as
+ * columns: the sensor ids as ints, then the x1, y1, x2 and y2 coordinates
+ * each as a block of doubles. All values are big-endian. Reading maps each
+ * column, in windows of at most MAX_WINDOW_BYTES so files beyond the 2 GiB
+ * limit of one mapping can be read, and copies it into an array with bulk
+ * gets, there is no parsing per interval.
+ *
+ * Without FLAG_NEGATIVES the file has no negative intervals and gives sensor
+ * data which derives them when they are first read. With it, the negative
+ * intervals are those in the file, even if there are none.
+ *
+ * @author
+ *
+ */
+public class SensorDataFile {
+
+	// "SNIV"
+	public static final int MAGIC = 0x534E4956;
+	public static final int VERSION = 2;
+
+	// flags of the header
+	// the negative intervals are stored
+	public static final int FLAG_NEGATIVES = 1;
+
+	// bytes of the header, and of one interval
+	public static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 5 * 4;
+	public static final int INTERVAL_BYTES = 4 + 4 * 8;
+
+	// largest part of a column mapped at once
+	private static final int MAX_WINDOW_BYTES = 1 << 28;
+
+	/**
+	 * write sensor data to a binary file, with its negative intervals
+	 *
+	 * @param data
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public static void write(SensorData data, String fileName)
+			throws IOException {
+		write(data, fileName, true);
+	}
+
+	/**
+	 * write sensor data to a binary file
+	 *
+	 * @param data
+	 * @param fileName
+	 * @param withNegatives
+	 *            false to leave the negative intervals out, they are derived
+	 *            again when the file is read
+	 * @throws IOException
+	 */
+	public static void write(SensorData data, String fileName,
+			boolean withNegatives) throws IOException {
+		List<SensorInterval> positives = data.getPositiveIntervals();
+		List<SensorInterval> negatives = null;
+		if (withNegatives) {
+			negatives = data.getNegativeIntervals();
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(negatives == null ? 0 : FLAG_NEGATIVES);
+			out.writeDouble(data.getAngle());
+			out.writeDouble(data.getGap());
+			out.writeInt(data.getSensorCount());
+			out.writeInt(data.getWidth());
+			out.writeInt(data.getHeight());
+			out.writeInt(positives.size());
+			out.writeInt(negatives == null ? 0 : negatives.size());
+
+			writeColumns(out, positives, data.getPositiveStore(),
+					data.getPositiveLineIntervals());
+			if (negatives != null) {
+				writeColumns(out, negatives, data.getNegativeStore(),
+						data.getNegativeLineIntervals());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * read sensor data from a binary file, into primitive storage, see
+	 * SensorData.STORE_ARRAYS
+	 *
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 *             if the file is not a sensor data file of this version
+	 */
+	public static SensorData read(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long fileSize = channel.size();
+			if (fileSize < HEADER_BYTES) {
+				throw new IOException("Not a sensor data file: " + fileName);
+			}
+			MappedByteBuffer header = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a sensor data file: " + fileName);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version
+						+ " of sensor data file: " + fileName);
+			}
+			int flags = header.getInt();
+			double angle = header.getDouble();
+			double gap = header.getDouble();
+			int sensorCount = header.getInt();
+			int width = header.getInt();
+			int height = header.getInt();
+			int nPositives = header.getInt();
+			int nNegatives = header.getInt();
+			boolean hasNegatives = (flags & FLAG_NEGATIVES) != 0;
+			if (nPositives < 0
+					|| nNegatives < 0
+					|| (!hasNegatives && nNegatives > 0)
+					|| fileSize != HEADER_BYTES + (long) nPositives
+							* INTERVAL_BYTES + (long) nNegatives
+							* INTERVAL_BYTES) {
+				throw new IOException("Truncated sensor data file: "
+						+ fileName);
+			}
+
+			long offset = HEADER_BYTES;
+			SensorIntervalStore positives = readColumns(channel, offset,
+					nPositives);
+			offset += (long) nPositives * INTERVAL_BYTES;
+			SensorIntervalStore negatives = null;
+			if (hasNegatives) {
+				negatives = readColumns(channel, offset, nNegatives);
+			}
+			return new SensorData(positives, negatives, angle, gap,
+					sensorCount, width, height);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * write the columns of a list of intervals one after the other, each
+	 * read straight from the primitive or parametric storage behind the list
+	 * if there is one
+	 */
+	private static void writeColumns(DataOutputStream out,
+			List<SensorInterval> intervals, SensorIntervalStore store,
+			SensorLineIntervals lineIntervals) throws IOException {
+		int n = intervals.size();
+		for (int i = 0; i < n; i++) {
+			if (store != null) {
+				out.writeInt(store.getSensorID(i));
+			} else if (lineIntervals != null) {
+				out.writeInt(lineIntervals.getSensorID(i));
+			} else {
+				out.writeInt(intervals.get(i).getSensorID());
+			}
+		}
+		for (int c = 0; c < 4; c++) {
+			for (int i = 0; i < n; i++) {
+				out.writeDouble(getCoordinate(intervals, store, lineIntervals,
+						i, c));
+			}
+		}
+	}
+
+	/**
+	 * coordinate c of interval i, x1, y1, x2 or y2
+	 */
+	private static double getCoordinate(List<SensorInterval> intervals,
+			SensorIntervalStore store, SensorLineIntervals lineIntervals,
+			int i, int c) {
+		if (store != null) {
+			switch (c) {
+			case 0:
+				return store.getX1(i);
+			case 1:
+				return store.getY1(i);
+			case 2:
+				return store.getX2(i);
+			default:
+				return store.getY2(i);
+			}
+		}
+		if (lineIntervals != null) {
+			switch (c) {
+			case 0:
+				return lineIntervals.getX1(i);
+			case 1:
+				return lineIntervals.getY1(i);
+			case 2:
+				return lineIntervals.getX2(i);
+			default:
+				return lineIntervals.getY2(i);
+			}
+		}
+		Line2D l = intervals.get(i).getInterval();
+		switch (c) {
+		case 0:
+			return l.getX1();
+		case 1:
+			return l.getY1();
+		case 2:
+			return l.getX2();
+		default:
+			return l.getY2();
+		}
+	}
+
+	/**
+	 * read the columns of n intervals starting at an offset into primitive
+	 * storage
+	 */
+	private static SensorIntervalStore readColumns(FileChannel channel,
+			long offset, int n) throws IOException {
+		int[] ids = new int[n];
+		readInts(channel, offset, ids);
+		offset += (long) n * 4;
+
+		double[][] coords = new double[4][n];
+		for (int c = 0; c < 4; c++) {
+			readDoubles(channel, offset, coords[c]);
+			offset += (long) n * 8;
+		}
+		return new SensorIntervalStore(ids, coords[0], coords[1], coords[2],
+				coords[3]);
+	}
+
+	/**
+	 * fill an array with the ints starting at an offset, one mapped window
+	 * at a time
+	 */
+	private static void readInts(FileChannel channel, long offset,
+			int[] values) throws IOException {
+		int window = MAX_WINDOW_BYTES / 4;
+		for (int from = 0; from < values.length; from += window) {
+			int count = Math.min(window, values.length - from);
+			channel.map(FileChannel.MapMode.READ_ONLY,
+					offset + (long) from * 4, (long) count * 4)
+					.asIntBuffer().get(values, from, count);
+		}
+	}
+
+	/**
+	 * fill an array with the doubles starting at an offset, one mapped
+	 * window at a time
+	 */
+	private static void readDoubles(FileChannel channel, long offset,
+			double[] values) throws IOException {
+		int window = MAX_WINDOW_BYTES / 8;
+		for (int from = 0; from < values.length; from += window) {
+			int count = Math.min(window, values.length - from);
+			channel.map(FileChannel.MapMode.READ_ONLY,
+					offset + (long) from * 8, (long) count * 8)
+					.asDoubleBuffer().get(values, from, count);
+		}
+	}
+}
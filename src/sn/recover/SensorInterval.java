@@ -2,6 +2,7 @@ package sn.recover;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 
 //sub-class for intervals, denoting positive components detected in sensor data
 public class SensorInterval {
@@ -42,20 +43,19 @@ public class SensorInterval {
 	 */
 	public SensorInterval(String sensorData) {
 		// parse the string, detecting positive component
-		String[] data = sensorData.split(" ");
-		sensorID = Integer.parseInt(data[0].split("Sensor")[1]);
-
-		String p1 = data[1].substring(1, data[1].length() - 1);
-		double x1 = Double.parseDouble(p1.split(",")[0]);
-		double y1 = Double.parseDouble(p1.split(",")[1]);
-		Point2D start = new Point2D.Double(x1, y1);
-
-		String p2 = data[2].substring(1, data[2].length() - 1);
-		double x2 = Double.parseDouble(p2.split(",")[0]);
-		double y2 = Double.parseDouble(p2.split(",")[1]);
-		Point2D end = new Point2D.Double(x2, y2);
-
-		interval = new Line2D.Double(start, end);
+		SensorTextParser parser = new SensorTextParser(sensorData);
+		try {
+			if (!parser.next()) {
+				throw new NumberFormatException("Not a sensor interval: "
+						+ sensorData);
+			}
+		} catch (IOException e) {
+			// a string is never read from a reader
+			throw new IllegalStateException(e);
+		}
+		sensorID = parser.getSensorID();
+		interval = new Line2D.Double(parser.getX1(), parser.getY1(),
+				parser.getX2(), parser.getY2());
 	}
 
 	// methods for accessing interval information
@@ -104,8 +104,9 @@ public class SensorInterval {
 		double w0, w1;
 		double xStart, yStart, xEnd, yEnd;
 
-		// if x1 = x2, the interval is parallel to y axis
-		if (x1 == x2) {
+		// if x1 = x2, the interval is parallel to y axis, which it is up to
+		// rounding when the sensor angle is PI / 2
+		if (Math.abs(x1 - x2) <= 1e-9 * Math.abs(y1 - y2)) {
 			xStart = x1;
 			xEnd = x2;
 			yStart = 0;
@@ -129,12 +130,18 @@ public class SensorInterval {
 
 			// if yStart < 0, then yEnd must be greater than 0
 			// to ensure part of the interval is in the canvas
-			assert (yEnd > 0) : "interval out of bound";
+			assert (yEnd >= 0) : "interval out of bound";
 
 			if (yEnd > height) {
 				yEnd = height;
 				xEnd = (yEnd - w0) / w1;
 			}
+
+			// a line through the corner (0, 0)
+			else if (yEnd < 0) {
+				yEnd = 0;
+				xEnd = (yEnd - w0) / w1;
+			}
 		}
 
 		else if (yStart > height) {
@@ -144,14 +151,20 @@ public class SensorInterval {
 			xEnd = width;
 			yEnd = w0 + w1 * xEnd;
 
-			// if yStart > height, then yEnd must be smaller than 0
+			// if yStart > height, then yEnd must be smaller than height
 			// to ensure part of the interval is in the canvas
-			assert (yEnd < height) : "interval out of bound";
+			assert (yEnd <= height) : "interval out of bound";
 
 			if (yEnd < 0) {
 				yEnd = 0;
 				xEnd = (yEnd - w0) / w1;
 			}
+
+			// a line through the corner (0, height)
+			else if (yEnd > height) {
+				yEnd = height;
+				xEnd = (yEnd - w0) / w1;
+			}
 		}
 
 		else {
@@ -0,0 +1,29 @@
+package sn.recover;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the intervals of sensor data one sensor at a time, see
+ * SensorData.streamIntervals
+ * 
+ * @author
+ * 
+ */
+public interface SensorIntervalListener {
+
+	/**
+	 * called once for every sensor, in sensor id order. The lists are reused
+	 * for the next sensor, copy the intervals to keep them.
+	 * 
+	 * @param sensorId
+	 * @param positiveIntervals
+	 *            positive intervals of the sensor, ordered along the sensor
+	 * @param negativeIntervals
+	 *            negative intervals of the sensor, ordered along the sensor
+	 * @throws IOException
+	 */
+	public void sensorIntervals(int sensorId,
+			List<SensorInterval> positiveIntervals,
+			List<SensorInterval> negativeIntervals) throws IOException;
+}
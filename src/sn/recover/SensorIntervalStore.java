@@ -0,0 +1,329 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A list of sensor intervals kept in parallel primitive arrays: the sensor
+ * id and the x1/y1/x2/y2 coordinates of each interval.
+ *
+ * Accessors and the cursor read the arrays directly and do not allocate.
+ * SensorInterval objects are only created when the store is read through
+ * its List view.
+ *
+ * @author
+ *
+ */
+public class SensorIntervalStore {
+
+	private int[] _sensorIds;
+	private double[] _x1;
+	private double[] _y1;
+	private double[] _x2;
+	private double[] _y2;
+	private int _size;
+
+	/**
+	 * Constructor
+	 */
+	public SensorIntervalStore() {
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            initial number of intervals
+	 */
+	public SensorIntervalStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		_sensorIds = new int[capacity];
+		_x1 = new double[capacity];
+		_y1 = new double[capacity];
+		_x2 = new double[capacity];
+		_y2 = new double[capacity];
+		_size = 0;
+	}
+
+	/**
+	 * Constructor, taking over columns of the same length without copying
+	 * them
+	 *
+	 * @param sensorIds
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 */
+	SensorIntervalStore(int[] sensorIds, double[] x1, double[] y1,
+			double[] x2, double[] y2) {
+		_size = sensorIds.length;
+		if (_size == 0) {
+			sensorIds = new int[1];
+			x1 = new double[1];
+			y1 = new double[1];
+			x2 = new double[1];
+			y2 = new double[1];
+		}
+		_sensorIds = sensorIds;
+		_x1 = x1;
+		_y1 = y1;
+		_x2 = x2;
+		_y2 = y2;
+	}
+
+	/**
+	 * add an interval
+	 *
+	 * @param sensorId
+	 * @param x1
+	 *            x of start point
+	 * @param y1
+	 *            y of start point
+	 * @param x2
+	 *            x of end point
+	 * @param y2
+	 *            y of end point
+	 */
+	public void add(int sensorId, double x1, double y1, double x2, double y2) {
+		if (_size == _sensorIds.length) {
+			grow();
+		}
+		_sensorIds[_size] = sensorId;
+		_x1[_size] = x1;
+		_y1[_size] = y1;
+		_x2[_size] = x2;
+		_y2[_size] = y2;
+		_size++;
+	}
+
+	/**
+	 * add an interval
+	 *
+	 * @param interval
+	 */
+	public void add(SensorInterval interval) {
+		Line2D l = interval.getInterval();
+		add(interval.getSensorID(), l.getX1(), l.getY1(), l.getX2(),
+				l.getY2());
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public void clear() {
+		_size = 0;
+	}
+
+	/**
+	 * index of the first interval whose sensor id is not smaller than the
+	 * given one. Intervals must be ordered by sensor id.
+	 *
+	 * @param sensorId
+	 * @return
+	 */
+	public int indexOfSensor(int sensorId) {
+		int lo = 0, hi = _size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_sensorIds[mid] < sensorId) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * replace the intervals from index <code>from</code> to
+	 * <code>to</code> - 1 by the intervals of another store
+	 *
+	 * @param from
+	 * @param to
+	 * @param insert
+	 */
+	public void splice(int from, int to, SensorIntervalStore insert) {
+		int newSize = _size - (to - from) + insert._size;
+		while (newSize > _sensorIds.length) {
+			grow();
+		}
+		int tail = _size - to;
+		int dest = from + insert._size;
+		System.arraycopy(_sensorIds, to, _sensorIds, dest, tail);
+		System.arraycopy(_x1, to, _x1, dest, tail);
+		System.arraycopy(_y1, to, _y1, dest, tail);
+		System.arraycopy(_x2, to, _x2, dest, tail);
+		System.arraycopy(_y2, to, _y2, dest, tail);
+
+		System.arraycopy(insert._sensorIds, 0, _sensorIds, from, insert._size);
+		System.arraycopy(insert._x1, 0, _x1, from, insert._size);
+		System.arraycopy(insert._y1, 0, _y1, from, insert._size);
+		System.arraycopy(insert._x2, 0, _x2, from, insert._size);
+		System.arraycopy(insert._y2, 0, _y2, from, insert._size);
+		_size = newSize;
+	}
+
+	/**
+	 * release unused capacity
+	 */
+	public void trimToSize() {
+		int capacity = Math.max(_size, 1);
+		_sensorIds = Arrays.copyOf(_sensorIds, capacity);
+		_x1 = Arrays.copyOf(_x1, capacity);
+		_y1 = Arrays.copyOf(_y1, capacity);
+		_x2 = Arrays.copyOf(_x2, capacity);
+		_y2 = Arrays.copyOf(_y2, capacity);
+	}
+
+	// methods for accessing interval information
+
+	public int getSensorID(int index) {
+		return _sensorIds[index];
+	}
+
+	public double getX1(int index) {
+		return _x1[index];
+	}
+
+	public double getY1(int index) {
+		return _y1[index];
+	}
+
+	public double getX2(int index) {
+		return _x2[index];
+	}
+
+	public double getY2(int index) {
+		return _y2[index];
+	}
+
+	/**
+	 * create a SensorInterval for an interval in the store
+	 *
+	 * @param index
+	 * @return
+	 */
+	public SensorInterval get(int index) {
+		return new SensorInterval(_sensorIds[index], new Line2D.Double(
+				_x1[index], _y1[index], _x2[index], _y2[index]));
+	}
+
+	/**
+	 * get a cursor positioned before the first interval
+	 *
+	 * @return
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * get a List view of the store. Reading creates a new SensorInterval for
+	 * each access, adding copies the interval into the store.
+	 *
+	 * @return
+	 */
+	public List<SensorInterval> asList() {
+		return new AbstractList<SensorInterval>() {
+			@Override
+			public SensorInterval get(int index) {
+				if (index < 0 || index >= _size) {
+					throw new IndexOutOfBoundsException("Index: " + index
+							+ ", Size: " + _size);
+				}
+				return SensorIntervalStore.this.get(index);
+			}
+
+			@Override
+			public boolean add(SensorInterval interval) {
+				SensorIntervalStore.this.add(interval);
+				modCount++;
+				return true;
+			}
+
+			@Override
+			public void clear() {
+				SensorIntervalStore.this.clear();
+				modCount++;
+			}
+
+			@Override
+			public int size() {
+				return _size;
+			}
+		};
+	}
+
+	private void grow() {
+		int capacity = _sensorIds.length * 2;
+		_sensorIds = Arrays.copyOf(_sensorIds, capacity);
+		_x1 = Arrays.copyOf(_x1, capacity);
+		_y1 = Arrays.copyOf(_y1, capacity);
+		_x2 = Arrays.copyOf(_x2, capacity);
+		_y2 = Arrays.copyOf(_y2, capacity);
+	}
+
+	/**
+	 * Iterate over the intervals of the store without allocation, e.g.
+	 *
+	 * <pre>
+	 * SensorIntervalStore.Cursor c = store.cursor();
+	 * while (c.next()) {
+	 * 	use(c.getSensorID(), c.getX1(), c.getY1(), c.getX2(), c.getY2());
+	 * }
+	 * </pre>
+	 */
+	public class Cursor {
+		private int _index = -1;
+
+		/**
+		 * move to the next interval
+		 *
+		 * @return false if there is no more interval
+		 */
+		public boolean next() {
+			if (_index + 1 >= _size) {
+				_index = _size;
+				return false;
+			}
+			_index++;
+			return true;
+		}
+
+		/**
+		 * move back before the first interval
+		 */
+		public void reset() {
+			_index = -1;
+		}
+
+		public int getIndex() {
+			return _index;
+		}
+
+		public int getSensorID() {
+			return _sensorIds[_index];
+		}
+
+		public double getX1() {
+			return _x1[_index];
+		}
+
+		public double getY1() {
+			return _y1[_index];
+		}
+
+		public double getX2() {
+			return _x2[_index];
+		}
+
+		public double getY2() {
+			return _y2[_index];
+		}
+	}
+}
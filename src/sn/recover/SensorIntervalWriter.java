@@ -0,0 +1,73 @@
+package sn.recover;
+
+import java.awt.geom.AffineTransform;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Write streamed intervals to a positive and a negative file, in the format
+ * of SensorData.writeIntervalsToFile, without keeping them in memory
+ * 
+ * @author
+ * 
+ */
+public class SensorIntervalWriter implements SensorIntervalListener {
+
+	private BufferedWriter _outPositive;
+	private BufferedWriter _outNegative;
+	private AffineTransform _rotate;
+	private double[] _pts;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param positiveFileName
+	 * @param negativeFileName
+	 * @param rotate
+	 *            normalizing transform, null if not normalized
+	 * @throws IOException
+	 */
+	public SensorIntervalWriter(String positiveFileName,
+			String negativeFileName, AffineTransform rotate)
+			throws IOException {
+		System.out.println("saving positive intervals to " + positiveFileName);
+		_outPositive = new BufferedWriter(new FileWriter(positiveFileName));
+
+		System.out.println("saving negative intervals to " + negativeFileName);
+		_outNegative = new BufferedWriter(new FileWriter(negativeFileName));
+
+		_rotate = rotate;
+		_pts = new double[4];
+	}
+
+	@Override
+	public void sensorIntervals(int sensorId,
+			List<SensorInterval> positiveIntervals,
+			List<SensorInterval> negativeIntervals) throws IOException {
+		write(_outPositive, positiveIntervals);
+		write(_outNegative, negativeIntervals);
+	}
+
+	private void write(BufferedWriter out, List<SensorInterval> intervals)
+			throws IOException {
+		for (SensorInterval si : intervals) {
+			_pts[0] = si.getInterval().getX1();
+			_pts[1] = si.getInterval().getY1();
+			_pts[2] = si.getInterval().getX2();
+			_pts[3] = si.getInterval().getY2();
+			SensorData.writeInterval(out, si.getSensorID(), _pts, _rotate);
+		}
+	}
+
+	/**
+	 * flush and close both files
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		_outPositive.close();
+		_outNegative.close();
+	}
+}
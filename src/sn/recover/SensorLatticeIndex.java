@@ -0,0 +1,322 @@
+package sn.recover;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the intervals of one set of sensor data for intersection queries
+ * with line segments, using the lattice of its sensor lines.
+ *
+ * The sensor lines of a set are parallel and evenly spaced, so the offset of
+ * sensor j along the normal of the lines is offset0 + j * step. The sensors
+ * a segment crosses are then the ids between the offsets of its end points
+ * divided by the step, and the point where it crosses each of them follows
+ * from the offset of that sensor. The intervals of each sensor are sorted
+ * along the direction of the lines, with the largest end so far kept for
+ * each of them, so testing a crossing point is a binary search in the
+ * intervals of one sensor. Finding the sensors costs nothing, a query is
+ * O(log n) for each sensor the segment crosses.
+ *
+ * Intervals and segments that only touch count as intersecting, the same as
+ * Line2D.intersectsLine.
+ *
+ * @author
+ *
+ */
+public class SensorLatticeIndex {
+
+	// direction of the sensor lines
+	private double _cos;
+	private double _sin;
+
+	// offset of sensor j is _offset0 + j * _step
+	private double _offset0;
+	private double _step;
+
+	// intervals of sensor j are _lineStart[j - _minId] to
+	// _lineStart[j - _minId + 1] - 1
+	private int _minId;
+	private int _maxId;
+	private int[] _lineStart;
+
+	// the intervals of each sensor sorted along the direction: their index
+	// in the list, start and end, and the largest end of the intervals of
+	// the sensor up to each one
+	private List<SensorInterval> _intervals;
+	private int[] _order;
+	private double[] _starts;
+	private double[] _ends;
+	private double[] _maxEnds;
+
+	/**
+	 * Constructor
+	 *
+	 * @param intervals
+	 *            intervals of one set of sensor data
+	 * @param angle
+	 *            direction of the sensor lines in radians
+	 * @param gap
+	 *            distance between adjacent sensor lines, only used when all
+	 *            intervals are on one sensor
+	 */
+	public SensorLatticeIndex(List<SensorInterval> intervals, double angle,
+			double gap) {
+		_cos = Math.cos(angle);
+		_sin = Math.sin(angle);
+		_intervals = intervals;
+
+		int n = intervals.size();
+		_minId = Integer.MAX_VALUE;
+		_maxId = Integer.MIN_VALUE;
+		int first = -1, last = -1;
+		for (int i = 0; i < n; i++) {
+			int id = intervals.get(i).getSensorID();
+			if (id < _minId) {
+				_minId = id;
+				first = i;
+			}
+			if (id > _maxId) {
+				_maxId = id;
+				last = i;
+			}
+		}
+		if (n == 0) {
+			_minId = 1;
+			_maxId = 0;
+		}
+
+		// the lattice, from the sensors furthest apart
+		_step = gap > 0 ? gap : 1;
+		if (_maxId > _minId) {
+			_step = (getOffset(intervals.get(last)) - getOffset(intervals
+					.get(first))) / (_maxId - _minId);
+		}
+		_offset0 = n == 0 ? 0 : getOffset(intervals.get(first)) - _minId
+				* _step;
+
+		// bucket the intervals by sensor
+		int nLines = _maxId - _minId + 1;
+		_lineStart = new int[nLines + 1];
+		for (int i = 0; i < n; i++) {
+			_lineStart[intervals.get(i).getSensorID() - _minId + 1]++;
+		}
+		for (int j = 0; j < nLines; j++) {
+			_lineStart[j + 1] += _lineStart[j];
+		}
+		_order = new int[n];
+		_starts = new double[n];
+		_ends = new double[n];
+		_maxEnds = new double[n];
+		int[] next = new int[nLines];
+		System.arraycopy(_lineStart, 0, next, 0, nLines);
+		for (int i = 0; i < n; i++) {
+			SensorInterval si = intervals.get(i);
+			double t1 = getParam(si.getInterval().getX1(), si.getInterval()
+					.getY1());
+			double t2 = getParam(si.getInterval().getX2(), si.getInterval()
+					.getY2());
+			int k = next[si.getSensorID() - _minId]++;
+			_order[k] = i;
+			_starts[k] = Math.min(t1, t2);
+			_ends[k] = Math.max(t1, t2);
+		}
+
+		// sort each sensor, its intervals are usually in order already
+		for (int j = 0; j < nLines; j++) {
+			sortLine(_lineStart[j], _lineStart[j + 1]);
+			double maxEnd = Double.NEGATIVE_INFINITY;
+			for (int k = _lineStart[j]; k < _lineStart[j + 1]; k++) {
+				maxEnd = Math.max(maxEnd, _ends[k]);
+				_maxEnds[k] = maxEnd;
+			}
+		}
+	}
+
+	/**
+	 * number of intervals in the index
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _order.length;
+	}
+
+	/**
+	 * test if a line segment intersects any interval in the index
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @return
+	 */
+	public boolean intersects(double x1, double y1, double x2, double y2) {
+		return findIntersections(x1, y1, x2, y2, null);
+	}
+
+	/**
+	 * test if an interval intersects any interval in the index
+	 *
+	 * @param interval
+	 * @return
+	 */
+	public boolean intersects(SensorInterval interval) {
+		return intersects(interval.getInterval().getX1(), interval
+				.getInterval().getY1(), interval.getInterval().getX2(),
+				interval.getInterval().getY2());
+	}
+
+	/**
+	 * test if any of a list of intervals intersects any interval in the
+	 * index, stops at the first one that does
+	 *
+	 * @param intervals
+	 * @return
+	 */
+	public boolean intersectsAny(List<SensorInterval> intervals) {
+		for (int i = 0; i < intervals.size(); i++) {
+			if (intersects(intervals.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * find the intervals in the index an interval intersects
+	 *
+	 * @param interval
+	 * @return the intervals, in the order of the sensors they are on
+	 */
+	public List<SensorInterval> getIntersections(SensorInterval interval) {
+		List<SensorInterval> result = new ArrayList<SensorInterval>();
+		findIntersections(interval.getInterval().getX1(), interval
+				.getInterval().getY1(), interval.getInterval().getX2(),
+				interval.getInterval().getY2(), result);
+		return result;
+	}
+
+	/**
+	 * find the intervals a line segment intersects
+	 *
+	 * @param result
+	 *            list the intervals are added to, or null to stop at the
+	 *            first one
+	 * @return true if the segment intersects any interval
+	 */
+	private boolean findIntersections(double x1, double y1, double x2,
+			double y2, List<SensorInterval> result) {
+		if (_maxId < _minId) {
+			return false;
+		}
+		double o1 = getOffset(x1, y1);
+		double o2 = getOffset(x2, y2);
+		double t1 = getParam(x1, y1);
+		double t2 = getParam(x2, y2);
+		boolean found = false;
+
+		if (Math.abs(o2 - o1) <= ParallelIntervalIndex.LINE_TOLERANCE) {
+			// parallel to the sensors, only overlaps intervals on its own
+			// sensor
+			double mid = (o1 + o2) / 2;
+			long j = Math.round((mid - _offset0) / _step);
+			double distance = Math.abs(_offset0 + j * _step - mid);
+			if (j >= _minId && j <= _maxId
+					&& distance <= ParallelIntervalIndex.LINE_TOLERANCE) {
+				found = findOverlaps((int) j, Math.min(t1, t2),
+						Math.max(t1, t2), result);
+			}
+			return found;
+		}
+
+		// the sensors with an offset between the offsets of the end points
+		double j1 = (o1 - _offset0) / _step;
+		double j2 = (o2 - _offset0) / _step;
+		long first = Math.max(_minId, (long) Math.ceil(Math.min(j1, j2)));
+		long last = Math.min(_maxId, (long) Math.floor(Math.max(j1, j2)));
+		for (long j = first; j <= last; j++) {
+			double lambda = (_offset0 + j * _step - o1) / (o2 - o1);
+			double t = t1 + lambda * (t2 - t1);
+			if (findOverlaps((int) j, t, t, result)) {
+				found = true;
+				if (result == null) {
+					return true;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * find the intervals of a sensor overlapping [tMin, tMax]
+	 *
+	 * @param result
+	 *            list the intervals are added to, or null to only test
+	 * @return true if any interval overlaps
+	 */
+	private boolean findOverlaps(int sensorId, double tMin, double tMax,
+			List<SensorInterval> result) {
+		// last interval starting at or before tMax
+		int from = _lineStart[sensorId - _minId];
+		int lo = from, hi = _lineStart[sensorId - _minId + 1] - 1;
+		int k = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_starts[mid] <= tMax) {
+				k = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		if (k < 0 || _maxEnds[k] < tMin) {
+			return false;
+		}
+		if (result != null) {
+			// every overlapping interval is at or before k, and none is
+			// before the first one whose largest end so far reaches tMin
+			int end = result.size();
+			for (; k >= from && _maxEnds[k] >= tMin; k--) {
+				if (_ends[k] >= tMin) {
+					result.add(end, _intervals.get(_order[k]));
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * insertion sort of the intervals of a sensor by their start
+	 */
+	private void sortLine(int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			double s = _starts[i], e = _ends[i];
+			int o = _order[i];
+			int j = i - 1;
+			while (j >= from && _starts[j] > s) {
+				_starts[j + 1] = _starts[j];
+				_ends[j + 1] = _ends[j];
+				_order[j + 1] = _order[j];
+				j--;
+			}
+			_starts[j + 1] = s;
+			_ends[j + 1] = e;
+			_order[j + 1] = o;
+		}
+	}
+
+	private double getOffset(SensorInterval interval) {
+		return getOffset(
+				(interval.getInterval().getX1() + interval.getInterval()
+						.getX2()) / 2, (interval.getInterval().getY1() + interval
+						.getInterval().getY2()) / 2);
+	}
+
+	private double getOffset(double x, double y) {
+		return x * _sin - y * _cos;
+	}
+
+	private double getParam(double x, double y) {
+		return x * _cos + y * _sin;
+	}
+}
@@ -0,0 +1,334 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import sn.regiondetect.ParallelLines;
+
+/**
+ * Intervals on a family of parallel sensor lines, each kept as (sensorId,
+ * tStart, tEnd) where t is the parameter along the sensor line defined by
+ * ParallelLines. Sensor id i lies on line i - 1.
+ *
+ * Since every interval sits on a known line, merges, complements and overlap
+ * tests are plain comparisons of parameters. Line2D objects are only created
+ * on demand, through get() or the List view.
+ *
+ * @author
+ *
+ */
+public class SensorLineIntervals {
+
+	private ParallelLines _lines;
+	private int[] _sensorIds;
+	private double[] _tStart;
+	private double[] _tEnd;
+	private int _size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lines
+	 *            the sensor lines the intervals sit on
+	 */
+	public SensorLineIntervals(ParallelLines lines) {
+		_lines = lines;
+		_sensorIds = new int[16];
+		_tStart = new double[16];
+		_tEnd = new double[16];
+		_size = 0;
+	}
+
+	public ParallelLines getLines() {
+		return _lines;
+	}
+
+	/**
+	 * add an interval
+	 *
+	 * @param sensorId
+	 * @param tStart
+	 * @param tEnd
+	 */
+	public void add(int sensorId, double tStart, double tEnd) {
+		if (_size == _sensorIds.length) {
+			int capacity = _size * 2;
+			_sensorIds = Arrays.copyOf(_sensorIds, capacity);
+			_tStart = Arrays.copyOf(_tStart, capacity);
+			_tEnd = Arrays.copyOf(_tEnd, capacity);
+		}
+		_sensorIds[_size] = sensorId;
+		_tStart[_size] = tStart;
+		_tEnd[_size] = tEnd;
+		_size++;
+	}
+
+	/**
+	 * add an interval given by two points on its sensor line
+	 *
+	 * @param sensorId
+	 * @param line
+	 */
+	public void add(int sensorId, Line2D line) {
+		double t1 = _lines.getParam(line.getX1(), line.getY1());
+		double t2 = _lines.getParam(line.getX2(), line.getY2());
+		add(sensorId, Math.min(t1, t2), Math.max(t1, t2));
+	}
+
+	/**
+	 * add an interval, merging it with the last interval if they are on the
+	 * same sensor and overlap. Intervals must be added in order.
+	 *
+	 * @param sensorId
+	 * @param tStart
+	 * @param tEnd
+	 */
+	public void addMerged(int sensorId, double tStart, double tEnd) {
+		int last = _size - 1;
+		if (last >= 0 && _sensorIds[last] == sensorId
+				&& tStart <= _tEnd[last]) {
+			_tEnd[last] = Math.max(_tEnd[last], tEnd);
+			return;
+		}
+		add(sensorId, tStart, tEnd);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public void clear() {
+		_size = 0;
+	}
+
+	/**
+	 * index of the first interval whose sensor id is not smaller than the
+	 * given one. Intervals must be ordered by sensor id.
+	 *
+	 * @param sensorId
+	 * @return
+	 */
+	public int indexOfSensor(int sensorId) {
+		int lo = 0, hi = _size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_sensorIds[mid] < sensorId) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * replace the intervals from index <code>from</code> to
+	 * <code>to</code> - 1 by the intervals of another set on the same lines
+	 *
+	 * @param from
+	 * @param to
+	 * @param insert
+	 */
+	public void splice(int from, int to, SensorLineIntervals insert) {
+		int newSize = _size - (to - from) + insert._size;
+		if (newSize > _sensorIds.length) {
+			int capacity = Math.max(newSize, _sensorIds.length * 2);
+			_sensorIds = Arrays.copyOf(_sensorIds, capacity);
+			_tStart = Arrays.copyOf(_tStart, capacity);
+			_tEnd = Arrays.copyOf(_tEnd, capacity);
+		}
+		int tail = _size - to;
+		int dest = from + insert._size;
+		System.arraycopy(_sensorIds, to, _sensorIds, dest, tail);
+		System.arraycopy(_tStart, to, _tStart, dest, tail);
+		System.arraycopy(_tEnd, to, _tEnd, dest, tail);
+
+		System.arraycopy(insert._sensorIds, 0, _sensorIds, from, insert._size);
+		System.arraycopy(insert._tStart, 0, _tStart, from, insert._size);
+		System.arraycopy(insert._tEnd, 0, _tEnd, from, insert._size);
+		_size = newSize;
+	}
+
+	/**
+	 * release unused capacity
+	 */
+	public void trimToSize() {
+		int capacity = Math.max(_size, 1);
+		_sensorIds = Arrays.copyOf(_sensorIds, capacity);
+		_tStart = Arrays.copyOf(_tStart, capacity);
+		_tEnd = Arrays.copyOf(_tEnd, capacity);
+	}
+
+	// methods for accessing interval information
+
+	public int getSensorID(int index) {
+		return _sensorIds[index];
+	}
+
+	public double getStart(int index) {
+		return _tStart[index];
+	}
+
+	public double getEnd(int index) {
+		return _tEnd[index];
+	}
+
+	public double getX1(int index) {
+		return _lines.getX(_sensorIds[index] - 1, _tStart[index]);
+	}
+
+	public double getY1(int index) {
+		return _lines.getY(_tStart[index]);
+	}
+
+	public double getX2(int index) {
+		return _lines.getX(_sensorIds[index] - 1, _tEnd[index]);
+	}
+
+	public double getY2(int index) {
+		return _lines.getY(_tEnd[index]);
+	}
+
+	/**
+	 * create a SensorInterval for an interval
+	 *
+	 * @param index
+	 * @return
+	 */
+	public SensorInterval get(int index) {
+		return new SensorInterval(_sensorIds[index], _lines.getLine(
+				_sensorIds[index] - 1, _tStart[index], _tEnd[index]));
+	}
+
+	/**
+	 * sort the intervals of each sensor by start, keeping the sensors in the
+	 * order they were added
+	 */
+	public void sortWithinSensors() {
+		int from = 0;
+		while (from < _size) {
+			int to = from + 1;
+			while (to < _size && _sensorIds[to] == _sensorIds[from]) {
+				to++;
+			}
+			// insertion sort, a sensor only has a few intervals
+			for (int i = from + 1; i < to; i++) {
+				double s = _tStart[i], e = _tEnd[i];
+				int j = i - 1;
+				while (j >= from && _tStart[j] > s) {
+					_tStart[j + 1] = _tStart[j];
+					_tEnd[j + 1] = _tEnd[j];
+					j--;
+				}
+				_tStart[j + 1] = s;
+				_tEnd[j + 1] = e;
+			}
+			from = to;
+		}
+	}
+
+	/**
+	 * test if an interval overlaps a range on the same sensor line
+	 *
+	 * @param index
+	 * @param sensorId
+	 * @param tStart
+	 * @param tEnd
+	 * @return
+	 */
+	public boolean overlaps(int index, int sensorId, double tStart, double tEnd) {
+		return _sensorIds[index] == sensorId && _tStart[index] <= tEnd
+				&& tStart <= _tEnd[index];
+	}
+
+	/**
+	 * Add the complement of these intervals within the canvas to another
+	 * set, for all sensors from 1 to the number of lines. Intervals must be
+	 * ordered by sensor id and by start within a sensor.
+	 *
+	 * @param complement
+	 *            receives the complement, ordered by sensor id
+	 */
+	public void addComplement(SensorLineIntervals complement) {
+		addComplement(complement, 0, _lines.getCount() - 1);
+	}
+
+	/**
+	 * Add the complement of these intervals within the canvas to another
+	 * set, for the lines from index <code>firstLine</code> to
+	 * <code>lastLine</code>. Intervals must be ordered by sensor id and by
+	 * start within a sensor. The canvas part of a line is its
+	 * SensorInterval.getFullInterval, a line without intervals gets it as it
+	 * is, even if it runs upwards.
+	 *
+	 * @param complement
+	 *            receives the complement, ordered by sensor id
+	 * @param firstLine
+	 * @param lastLine
+	 */
+	public void addComplement(SensorLineIntervals complement, int firstLine,
+			int lastLine) {
+		int k = indexOfSensor(firstLine + 1);
+		for (int i = firstLine; i <= lastLine; i++) {
+			int sensorId = i + 1;
+			double start = _lines.getClipStart(i);
+			double end = _lines.getClipEnd(i);
+			if (k == _size || _sensorIds[k] != sensorId) {
+				// the full interval, in its own direction
+				complement.add(sensorId, start, end);
+				continue;
+			}
+			if (start > end) {
+				double t = start;
+				start = end;
+				end = t;
+			}
+			while (k < _size && _sensorIds[k] == sensorId) {
+				complement.add(sensorId, start, _tStart[k]);
+				start = _tEnd[k];
+				k++;
+			}
+			complement.add(sensorId, start, end);
+		}
+	}
+
+	/**
+	 * get a List view of the intervals. Reading creates a new SensorInterval
+	 * for each access, adding projects the interval onto its sensor line.
+	 *
+	 * @return
+	 */
+	public List<SensorInterval> asList() {
+		return new AbstractList<SensorInterval>() {
+			@Override
+			public SensorInterval get(int index) {
+				if (index < 0 || index >= _size) {
+					throw new IndexOutOfBoundsException("Index: " + index
+							+ ", Size: " + _size);
+				}
+				return SensorLineIntervals.this.get(index);
+			}
+
+			@Override
+			public boolean add(SensorInterval interval) {
+				SensorLineIntervals.this.add(interval.getSensorID(),
+						interval.getInterval());
+				modCount++;
+				return true;
+			}
+
+			@Override
+			public void clear() {
+				SensorLineIntervals.this.clear();
+				modCount++;
+			}
+
+			@Override
+			public int size() {
+				return _size;
+			}
+		};
+	}
+}
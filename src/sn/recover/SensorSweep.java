@@ -0,0 +1,340 @@
+package sn.recover;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sn.regiondetect.ComplexRegion;
+import sn.regiondetect.CrossingParityBuilder;
+import sn.regiondetect.ParallelLines;
+import sn.regiondetect.PathIntersector;
+import sn.regiondetect.Region;
+import sn.regiondetect.RegionEdges;
+
+/**
+ * Compute the positive intervals of all parallel sensor lines in one pass
+ * over the edges of each region.
+ *
+ * Every edge of a region is projected onto the normal of the sensor lines
+ * once, which gives the range of sensor lines it can cross. The crossings of
+ * the edge with those lines are bucketed by sensor line, so a region costs
+ * O(edges + crossings) instead of one full path traversal per line. The
+ * crossings of each line are then combined by a CrossingParityBuilder.
+ *
+ * @author
+ *
+ */
+public class SensorSweep {
+
+	private ParallelLines _lines;
+
+	// sorted disjoint intervals on each line, as start/end parameter pairs
+	private double[][] _intervals;
+
+	// crossings of all regions, bucketed by line
+	private int[] _crossLine;
+	private double[] _crossParam;
+	private int[] _crossRegion;
+	private int[] _crossLayer;
+	private int _nCross;
+	private int _nRegions;
+
+	// region and layer of the edges being swept
+	private int _region;
+	private int _layer;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lines
+	 *            the sensor lines
+	 */
+	public SensorSweep(ParallelLines lines) {
+		_lines = lines;
+		_intervals = new double[lines.getCount()][];
+		_crossLine = new int[64];
+		_crossParam = new double[64];
+		_crossRegion = new int[64];
+		_crossLayer = new int[64];
+		_nCross = 0;
+		_nRegions = 0;
+	}
+
+	/**
+	 * Compute positive intervals of a complex region, the same intervals as
+	 * SensorData.BUILD_PER_LINE gives by intersecting each line with the
+	 * regions whose extent contains it
+	 *
+	 * @param complexRegion
+	 * @param gap
+	 * @param angle
+	 * @param canvasWidth
+	 * @param canvasHeight
+	 * @return positive intervals ordered by sensor id
+	 * @throws Exception
+	 */
+	public static List<SensorInterval> getPositiveIntervals(
+			ComplexRegion complexRegion, double gap, double angle,
+			int canvasWidth, int canvasHeight) throws Exception {
+		SensorSweep sweep = new SensorSweep(new ParallelLines(gap, angle,
+				canvasWidth, canvasHeight));
+		sweep.addRegions(new RegionEdges(complexRegion.getComplexRegion()));
+		return sweep.getPositiveIntervals();
+	}
+
+	/**
+	 * Collect the crossings of a region with all lines. A region that is not
+	 * a hole adds to the positive intervals, a hole is cut out of them; the
+	 * intervals are updated by the next call to build() or
+	 * getPositiveIntervals().
+	 *
+	 * @param p
+	 * @throws Exception
+	 */
+	public void addRegion(Region p) throws Exception {
+		addRegions(new RegionEdges(new Region[] { p }));
+	}
+
+	/**
+	 * Collect the crossings of decoded regions with all lines, in the order
+	 * of the regions. The edges can be shared by sweeps of other angles.
+	 *
+	 * @param edges
+	 */
+	public void addRegions(RegionEdges edges) {
+		double firstOffset = _lines.getOffset(0);
+		double lastOffset = _lines.getOffset(_lines.getCount() - 1);
+
+		for (int r = 0; r < edges.getRegionCount(); r++) {
+			startRegion(edges.getLayer(r));
+
+			// skip a region whose bounding box misses all lines
+			double o0 = _lines.getOffset(edges.getMinX(r), edges.getMinY(r));
+			double o1 = _lines.getOffset(edges.getMaxX(r), edges.getMinY(r));
+			double o2 = _lines.getOffset(edges.getMinX(r), edges.getMaxY(r));
+			double o3 = _lines.getOffset(edges.getMaxX(r), edges.getMaxY(r));
+			if (Math.max(Math.max(o0, o1), Math.max(o2, o3)) < firstOffset
+					|| Math.min(Math.min(o0, o1), Math.min(o2, o3)) > lastOffset) {
+				continue;
+			}
+
+			for (int e = edges.getFirstEdge(r); e < edges.getEndEdge(r); e++) {
+				if (edges.isCubic(e)) {
+					addCubicCrossings(edges.getCoord(e, 0),
+							edges.getCoord(e, 1), edges.getCoord(e, 2),
+							edges.getCoord(e, 3), edges.getCoord(e, 4),
+							edges.getCoord(e, 5), edges.getCoord(e, 6),
+							edges.getCoord(e, 7));
+				} else {
+					addLineCrossings(edges.getCoord(e, 0),
+							edges.getCoord(e, 1), edges.getCoord(e, 6),
+							edges.getCoord(e, 7));
+				}
+			}
+		}
+		_intervals = null;
+	}
+
+	/**
+	 * sweep the crossings of each line to get its positive intervals
+	 */
+	public void build() {
+		int nLines = _lines.getCount();
+		_intervals = new double[nLines][];
+
+		// counting sort of the crossings by line
+		int[] bucketStart = new int[nLines + 1];
+		for (int k = 0; k < _nCross; k++) {
+			bucketStart[_crossLine[k] + 1]++;
+		}
+		for (int i = 0; i < nLines; i++) {
+			bucketStart[i + 1] += bucketStart[i];
+		}
+		int[] order = new int[_nCross];
+		int[] next = Arrays.copyOf(bucketStart, nLines);
+		for (int k = 0; k < _nCross; k++) {
+			order[next[_crossLine[k]]++] = k;
+		}
+
+		CrossingParityBuilder builder = new CrossingParityBuilder();
+		for (int i = 0; i < nLines; i++) {
+			if (bucketStart[i] == bucketStart[i + 1]) {
+				continue;
+			}
+			builder.reset();
+			for (int k = bucketStart[i]; k < bucketStart[i + 1]; k++) {
+				int c = order[k];
+				builder.addCrossing(_crossParam[c], _crossRegion[c],
+						_crossLayer[c]);
+			}
+			double[] intervals = builder.build();
+			if (intervals.length > 0) {
+				_intervals[i] = intervals;
+			}
+		}
+	}
+
+	/**
+	 * get positive intervals of all lines
+	 *
+	 * @return positive intervals ordered by sensor id, sensor id starts from 1
+	 */
+	public List<SensorInterval> getPositiveIntervals() {
+		List<SensorInterval> positiveIntervals = new ArrayList<SensorInterval>();
+		addPositiveIntervals(positiveIntervals);
+		return positiveIntervals;
+	}
+
+	/**
+	 * add positive intervals of all lines to a list, ordered by sensor id
+	 *
+	 * @param positiveIntervals
+	 */
+	public void addPositiveIntervals(List<SensorInterval> positiveIntervals) {
+		if (_intervals == null) {
+			build();
+		}
+		for (int i = 0; i < _intervals.length; i++) {
+			double[] intervals = _intervals[i];
+			if (intervals == null) {
+				continue;
+			}
+			for (int k = 0; k < intervals.length; k += 2) {
+				positiveIntervals.add(new SensorInterval(i + 1, _lines
+						.getLine(i, intervals[k], intervals[k + 1])));
+			}
+		}
+	}
+
+	/**
+	 * add positive intervals of all lines to a primitive store, ordered by
+	 * sensor id
+	 *
+	 * @param store
+	 */
+	public void addPositiveIntervals(SensorIntervalStore store) {
+		if (_intervals == null) {
+			build();
+		}
+		for (int i = 0; i < _intervals.length; i++) {
+			double[] intervals = _intervals[i];
+			if (intervals == null) {
+				continue;
+			}
+			for (int k = 0; k < intervals.length; k += 2) {
+				double t0 = intervals[k], t1 = intervals[k + 1];
+				store.add(i + 1, _lines.getX(i, t0), _lines.getY(t0),
+						_lines.getX(i, t1), _lines.getY(t1));
+			}
+		}
+	}
+
+	/**
+	 * add positive intervals of all lines as line parameters, ordered by
+	 * sensor id
+	 *
+	 * @param lineIntervals
+	 */
+	public void addPositiveIntervals(SensorLineIntervals lineIntervals) {
+		if (_intervals == null) {
+			build();
+		}
+		for (int i = 0; i < _intervals.length; i++) {
+			double[] intervals = _intervals[i];
+			if (intervals == null) {
+				continue;
+			}
+			for (int k = 0; k < intervals.length; k += 2) {
+				lineIntervals.add(i + 1, intervals[k], intervals[k + 1]);
+			}
+		}
+	}
+
+	private void addLineCrossings(double x0, double y0, double x1, double y1) {
+		double o0 = _lines.getOffset(x0, y0);
+		double o1 = _lines.getOffset(x1, y1);
+
+		// one more line on each side, an end point on a line may round out
+		// of the range while lineRoots counts the crossing
+		int first = Math.max(0, _lines.getFirstIndex(Math.min(o0, o1)) - 1);
+		int last = Math.min(_lines.getCount() - 1,
+				_lines.getLastIndex(Math.max(o0, o1)) + 1);
+
+		double[] roots = new double[1];
+		for (int i = first; i <= last; i++) {
+			if (PathIntersector.lineRoots(x0, y0, x1, y1, _lines.getTopX(i),
+					0, _lines.getCos(), _lines.getSin(), roots) > 0) {
+				double y = y0 + (y1 - y0) * roots[0];
+				double x = x0 + (x1 - x0) * roots[0];
+				addCrossing(i, _lines.getParam(x, y));
+			}
+		}
+	}
+
+	private void addCubicCrossings(double x0, double y0, double x1,
+			double y1, double x2, double y2, double x3, double y3) {
+		double o0 = _lines.getOffset(x0, y0);
+		double o1 = _lines.getOffset(x1, y1);
+		double o2 = _lines.getOffset(x2, y2);
+		double o3 = _lines.getOffset(x3, y3);
+
+		// the curve lies in the hull of its control points, widened as for
+		// a straight edge
+		double minOffset = Math.min(Math.min(o0, o1), Math.min(o2, o3));
+		double maxOffset = Math.max(Math.max(o0, o1), Math.max(o2, o3));
+		int first = Math.max(0, _lines.getFirstIndex(minOffset) - 1);
+		int last = Math.min(_lines.getCount() - 1,
+				_lines.getLastIndex(maxOffset) + 1);
+
+		double[] roots = new double[3];
+		for (int i = first; i <= last; i++) {
+			int nRoots = PathIntersector.cubicRoots(x0, y0, x1, y1, x2, y2,
+					x3, y3, _lines.getTopX(i), 0, _lines.getCos(),
+					_lines.getSin(), roots);
+			for (int k = 0; k < nRoots; k++) {
+				double x = PathIntersector.cubicAt(x0, x1, x2, x3, roots[k]);
+				double y = PathIntersector.cubicAt(y0, y1, y2, y3, roots[k]);
+				addCrossing(i, _lines.getParam(x, y));
+			}
+		}
+	}
+
+	public ParallelLines getLines() {
+		return _lines;
+	}
+
+	/**
+	 * start collecting the crossings of the next region
+	 *
+	 * @param layer
+	 *            layer of the region
+	 */
+	protected void startRegion(int layer) {
+		_region = _nRegions++;
+		_layer = layer;
+		_intervals = null;
+	}
+
+	/**
+	 * add a crossing of the current region with a line
+	 *
+	 * @param line
+	 *            index of the line
+	 * @param t
+	 *            parameter of the crossing along the line
+	 */
+	protected void addCrossing(int line, double t) {
+		if (_nCross == _crossLine.length) {
+			int capacity = _nCross * 2;
+			_crossLine = Arrays.copyOf(_crossLine, capacity);
+			_crossParam = Arrays.copyOf(_crossParam, capacity);
+			_crossRegion = Arrays.copyOf(_crossRegion, capacity);
+			_crossLayer = Arrays.copyOf(_crossLayer, capacity);
+		}
+		_crossLine[_nCross] = line;
+		_crossParam[_nCross] = t;
+		_crossRegion[_nCross] = _region;
+		_crossLayer[_nCross] = _layer;
+		_nCross++;
+	}
+}
@@ -0,0 +1,483 @@
+package sn.recover;
+
+import java.awt.geom.Line2D;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+
+/**
+ * Streaming parser of sensor interval text, one interval per line in the
+ * format Sensor(\d+) [x1,y1] [x2,y2], as written by
+ * SensorData.writeIntervalsToFile.
+ *
+ * The text is read into one reusable char buffer and each line is scanned
+ * once, the sensor id and the coordinates are parsed in place without
+ * creating strings. Doubles get the same value as Double.parseDouble: a
+ * literal of at most 15 digits with a small exponent is one exact multiply
+ * or divide, longer ones such as those of Double.toString are rounded
+ * correctly with a 128-bit product by a power of ten (Eisel-Lemire). Only
+ * literals neither can decide, such as NaN, subnormal values or more than 18
+ * digits, are handed to Double.parseDouble.
+ *
+ * Blank lines are skipped, any other line not in the format throws a
+ * NumberFormatException.
+ *
+ * @author
+ *
+ */
+public class SensorTextParser {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// exact powers of ten for the short path
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+			1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// 128-bit mantissas of 10^e for e from MIN_EXP10 to MAX_EXP10, rounded
+	// down and with the top bit set
+	private static final int MIN_EXP10 = -342;
+	private static final int MAX_EXP10 = 308;
+	private static final long[] POWER_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+	private static final long[] POWER_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+	static {
+		BigInteger ten = BigInteger.valueOf(10);
+		for (int e = MIN_EXP10; e <= MAX_EXP10; e++) {
+			BigInteger m;
+			if (e >= 0) {
+				BigInteger p = ten.pow(e);
+				int shift = p.bitLength() - 128;
+				m = shift > 0 ? p.shiftRight(shift) : p.shiftLeft(-shift);
+			} else {
+				BigInteger p = ten.pow(-e);
+				m = BigInteger.ONE.shiftLeft(p.bitLength() + 127).divide(p);
+			}
+			POWER_HI[e - MIN_EXP10] = m.shiftRight(64).longValue();
+			POWER_LO[e - MIN_EXP10] = m.longValue();
+		}
+	}
+
+	// source of the text, null if all of it is in the buffer
+	private Reader _reader;
+	private char[] _buf;
+	private int _pos;
+	private int _limit;
+
+	// the current line, and where the next one starts
+	private int _lineStart;
+	private int _lineEnd;
+	private int _nextLine;
+	private int _lineNumber;
+
+	// the current interval
+	private int _sensorId;
+	private double _x1;
+	private double _y1;
+	private double _x2;
+	private double _y2;
+
+	/**
+	 * Constructor, parsing text from a reader
+	 *
+	 * @param reader
+	 */
+	public SensorTextParser(Reader reader) {
+		_reader = reader;
+		_buf = new char[BUFFER_SIZE];
+		_pos = 0;
+		_limit = 0;
+	}
+
+	/**
+	 * Constructor, parsing text in a string
+	 *
+	 * @param text
+	 */
+	public SensorTextParser(String text) {
+		_reader = null;
+		_buf = text.toCharArray();
+		_pos = 0;
+		_limit = _buf.length;
+	}
+
+	/**
+	 * parse the next interval
+	 *
+	 * @return false if there are no more intervals
+	 * @throws IOException
+	 * @throws NumberFormatException
+	 *             if the line is not a sensor interval
+	 */
+	public boolean next() throws IOException {
+		while (nextLine()) {
+			skipSpaces();
+			if (_pos == _lineEnd) {
+				continue;
+			}
+			parseLine();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * close the reader the text comes from
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (_reader != null) {
+			_reader.close();
+		}
+	}
+
+	public int getSensorID() {
+		return _sensorId;
+	}
+
+	public double getX1() {
+		return _x1;
+	}
+
+	public double getY1() {
+		return _y1;
+	}
+
+	public double getX2() {
+		return _x2;
+	}
+
+	public double getY2() {
+		return _y2;
+	}
+
+	/**
+	 * the current interval as an object
+	 *
+	 * @return
+	 */
+	public SensorInterval getInterval() {
+		return new SensorInterval(_sensorId, new Line2D.Double(_x1, _y1, _x2,
+				_y2));
+	}
+
+	/**
+	 * move to the next line, reading more text if it is not complete in the
+	 * buffer
+	 *
+	 * @return false at the end of the text
+	 */
+	private boolean nextLine() throws IOException {
+		_pos = _nextLine;
+		int scan = _pos;
+		while (true) {
+			while (scan < _limit && _buf[scan] != '\n') {
+				scan++;
+			}
+			if (scan < _limit || _reader == null) {
+				break;
+			}
+			// the line continues past the buffer, keep it and read more
+			int kept = _limit - _pos;
+			if (kept == _buf.length) {
+				char[] larger = new char[_buf.length * 2];
+				System.arraycopy(_buf, _pos, larger, 0, kept);
+				_buf = larger;
+			} else {
+				System.arraycopy(_buf, _pos, _buf, 0, kept);
+			}
+			_pos = 0;
+			scan = kept;
+			_limit = kept;
+			int n = _reader.read(_buf, _limit, _buf.length - _limit);
+			if (n < 0) {
+				_reader.close();
+				_reader = null;
+			} else {
+				_limit += n;
+			}
+		}
+		if (_pos == _limit) {
+			_nextLine = _lineStart = _lineEnd = _limit;
+			return false;
+		}
+		_lineStart = _pos;
+		_lineEnd = scan;
+		_nextLine = scan < _limit ? scan + 1 : scan;
+		if (_lineEnd > _pos && _buf[_lineEnd - 1] == '\r') {
+			_lineEnd--;
+		}
+		_lineNumber++;
+		return true;
+	}
+
+	/**
+	 * parse Sensor(\d+) [x1,y1] [x2,y2] in the current line
+	 */
+	private void parseLine() {
+		expect('S');
+		expect('e');
+		expect('n');
+		expect('s');
+		expect('o');
+		expect('r');
+		_sensorId = parseInt();
+		skipSpaces();
+		expect('[');
+		_x1 = parseDouble();
+		expect(',');
+		_y1 = parseDouble();
+		expect(']');
+		skipSpaces();
+		expect('[');
+		_x2 = parseDouble();
+		expect(',');
+		_y2 = parseDouble();
+		expect(']');
+		skipSpaces();
+		if (_pos != _lineEnd) {
+			throw malformed();
+		}
+	}
+
+	private void skipSpaces() {
+		while (_pos < _lineEnd && (_buf[_pos] == ' ' || _buf[_pos] == '\t')) {
+			_pos++;
+		}
+	}
+
+	private void expect(char c) {
+		if (_pos == _lineEnd || _buf[_pos] != c) {
+			throw malformed();
+		}
+		_pos++;
+	}
+
+	private int parseInt() {
+		boolean neg = false;
+		if (_pos < _lineEnd && (_buf[_pos] == '-' || _buf[_pos] == '+')) {
+			neg = _buf[_pos] == '-';
+			_pos++;
+		}
+		int start = _pos;
+		long value = 0;
+		while (_pos < _lineEnd && _buf[_pos] >= '0' && _buf[_pos] <= '9') {
+			value = value * 10 + (_buf[_pos] - '0');
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw malformed();
+			}
+			_pos++;
+		}
+		if (_pos == start || (!neg && value > Integer.MAX_VALUE)) {
+			throw malformed();
+		}
+		return (int) (neg ? -value : value);
+	}
+
+	/**
+	 * parse a double up to the next ',', ']' or space
+	 */
+	private double parseDouble() {
+		int start = _pos;
+		boolean neg = false;
+		if (_pos < _lineEnd && (_buf[_pos] == '-' || _buf[_pos] == '+')) {
+			neg = _buf[_pos] == '-';
+			_pos++;
+		}
+
+		// the first 18 significant digits, and the power of ten they are
+		// scaled by
+		long mantissa = 0;
+		int digits = 0;
+		int exp10 = 0;
+		boolean anyDigit = false;
+		boolean truncated = false;
+		char c;
+		while (_pos < _lineEnd && (c = _buf[_pos]) >= '0' && c <= '9') {
+			anyDigit = true;
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa > 0) {
+					digits++;
+				}
+			} else {
+				exp10++;
+				truncated |= c != '0';
+			}
+			_pos++;
+		}
+		if (_pos < _lineEnd && _buf[_pos] == '.') {
+			_pos++;
+			while (_pos < _lineEnd && (c = _buf[_pos]) >= '0' && c <= '9') {
+				anyDigit = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa > 0) {
+						digits++;
+					}
+					exp10--;
+				} else {
+					truncated |= c != '0';
+				}
+				_pos++;
+			}
+		}
+		if (anyDigit && _pos < _lineEnd
+				&& (_buf[_pos] == 'E' || _buf[_pos] == 'e')) {
+			_pos++;
+			boolean negExp = false;
+			if (_pos < _lineEnd && (_buf[_pos] == '-' || _buf[_pos] == '+')) {
+				negExp = _buf[_pos] == '-';
+				_pos++;
+			}
+			int expStart = _pos;
+			int exp = 0;
+			while (_pos < _lineEnd && (c = _buf[_pos]) >= '0' && c <= '9') {
+				if (exp < 100000) {
+					exp = exp * 10 + (c - '0');
+				}
+				_pos++;
+			}
+			if (_pos == expStart) {
+				anyDigit = false;
+			}
+			exp10 += negExp ? -exp : exp;
+		}
+
+		double value = Double.NaN;
+		if (anyDigit && !truncated && isDelimiter()) {
+			value = toDouble(mantissa, exp10, neg);
+		}
+		if (Double.isNaN(value)) {
+			// not a plain decimal, or too close to call
+			while (_pos < _lineEnd && !isDelimiter()) {
+				_pos++;
+			}
+			try {
+				value = Double.parseDouble(new String(_buf, start, _pos
+						- start));
+			} catch (NumberFormatException e) {
+				throw malformed();
+			}
+		}
+		return value;
+	}
+
+	private boolean isDelimiter() {
+		if (_pos == _lineEnd) {
+			return true;
+		}
+		char c = _buf[_pos];
+		return c == ',' || c == ']' || c == ' ' || c == '\t';
+	}
+
+	/**
+	 * the double nearest to mantissa * 10^exp10
+	 *
+	 * @return Double.NaN if it cannot be decided here
+	 */
+	private static double toDouble(long mantissa, int exp10, boolean neg) {
+		if (mantissa == 0) {
+			return neg ? -0.0 : 0.0;
+		}
+		if (mantissa <= 1L << 53 && exp10 >= -22 && exp10 <= 22) {
+			// both are exact, so is the one rounding of the result
+			double d = mantissa;
+			d = exp10 < 0 ? d / POWERS_OF_TEN[-exp10] : d
+					* POWERS_OF_TEN[exp10];
+			return neg ? -d : d;
+		}
+		if (exp10 < MIN_EXP10) {
+			return neg ? -0.0 : 0.0;
+		}
+		if (exp10 > MAX_EXP10) {
+			return neg ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		return eiselLemire(mantissa, exp10, neg);
+	}
+
+	/**
+	 * correctly rounded mantissa * 10^exp10 from the 128-bit product of the
+	 * mantissa and the power of ten, see Lemire, "Number Parsing at a
+	 * Gigabyte per Second"
+	 *
+	 * @return Double.NaN if the product is too close to halfway between two
+	 *         doubles, or the result is subnormal
+	 */
+	private static double eiselLemire(long mantissa, int exp10, boolean neg) {
+		int clz = Long.numberOfLeadingZeros(mantissa);
+		long man = mantissa << clz;
+		long retExp2 = ((217706 * exp10) >> 16) + 64 + 1023 - clz;
+
+		int i = exp10 - MIN_EXP10;
+		long xHi = multiplyHigh(man, POWER_HI[i]);
+		long xLo = man * POWER_HI[i];
+
+		if ((xHi & 0x1FF) == 0x1FF && unsignedLess(xLo + man, man)) {
+			// the error of the truncated power may carry into the result,
+			// add the low half of the power
+			long yHi = multiplyHigh(man, POWER_LO[i]);
+			long yLo = man * POWER_LO[i];
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (unsignedLess(mergedLo, xLo)) {
+				mergedHi++;
+			}
+			if ((mergedHi & 0x1FF) == 0x1FF && mergedLo == -1L
+					&& unsignedLess(yLo + man, man)) {
+				return Double.NaN;
+			}
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+
+		// the top 54 bits
+		long msb = xHi >>> 63;
+		long retMantissa = xHi >>> (msb + 9);
+		retExp2 -= 1 ^ msb;
+
+		if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+			return Double.NaN;
+		}
+
+		// round to 53 bits
+		retMantissa += retMantissa & 1;
+		retMantissa >>>= 1;
+		if ((retMantissa >>> 53) > 0) {
+			retMantissa >>>= 1;
+			retExp2++;
+		}
+		if (retExp2 <= 0 || retExp2 >= 0x7FF) {
+			return Double.NaN;
+		}
+		long bits = retExp2 << 52 | (retMantissa & 0x000FFFFFFFFFFFFFL);
+		if (neg) {
+			bits |= 0x8000000000000000L;
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * high 64 bits of the unsigned 128-bit product of a and b
+	 */
+	private static long multiplyHigh(long a, long b) {
+		long aLo = a & 0xFFFFFFFFL, aHi = a >>> 32;
+		long bLo = b & 0xFFFFFFFFL, bHi = b >>> 32;
+		long loLo = aLo * bLo;
+		long hiLo = aHi * bLo;
+		long loHi = aLo * bHi;
+		long cross = (loLo >>> 32) + (hiLo & 0xFFFFFFFFL) + loHi;
+		return aHi * bHi + (hiLo >>> 32) + (cross >>> 32);
+	}
+
+	private static boolean unsignedLess(long a, long b) {
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+
+	private NumberFormatException malformed() {
+		return new NumberFormatException("Not a sensor interval at line "
+				+ _lineNumber + ": "
+				+ new String(_buf, _lineStart, _lineEnd - _lineStart));
+	}
+}
@@ -0,0 +1,353 @@
+package sn.recover;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sn.regiondetect.ComplexRegion;
+import sn.regiondetect.Region;
+
+/**
+ * Check that every build and storage mode of SensorData gives the intervals
+ * of BUILD_PER_LINE with STORE_LIST, on random complex regions.
+ *
+ * BUILD_PER_LINE itself is checked against the regions: points along every
+ * positive interval must be covered by the regions applied in layer order,
+ * points along every negative interval must not. BUILD_SWEEP and
+ * BUILD_PARALLEL must give the same intervals, the other storage modes the
+ * same negative intervals and streamIntervals the same intervals of each
+ * sensor. BUILD_FIXED_POINT and BUILD_EDGE_KERNEL approximate the curves, so
+ * the covered length of each sensor is compared instead.
+ *
+ * Usage TestBuildModes [number of complex regions], exits with 1 if a check
+ * fails.
+ *
+ * @author
+ *
+ */
+public class TestBuildModes {
+
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	// no multiple of the gap is a whole number, so the lines do not run
+	// along the edges of the regions or touch their rounded corners
+	private static final double GAP = Math.sqrt(11);
+
+	// largest distance of two end points of the same interval
+	private static final double TOLERANCE = 1e-6;
+
+	// points of an interval checked against the regions, at most this far
+	// apart and this far from its ends
+	private static final double SAMPLE_STEP = 2.0;
+	private static final double SAMPLE_MARGIN = 0.01;
+
+	// flatness of the approximating modes, and the largest difference of
+	// the covered length of a sensor it may give
+	private static final double FLATNESS = 0.001;
+	private static final double MAX_COVERAGE_DIFF = 1.0;
+
+	private static int _checks = 0;
+	private static int _failures = 0;
+
+	public static void main(String argv[]) throws Exception {
+		int nCases = argv.length > 0 ? Integer.parseInt(argv[0]) : 5;
+
+		// generic angles, and angles where lines run along the canvas or
+		// through its corners
+		double[] angles = { 0.23, 0.71, 1.31, 1.93, 2.47, Math.PI / 2,
+				Math.PI / 4, Math.atan2(HEIGHT, WIDTH) };
+		boolean[] generic = { true, true, true, true, true, false, false,
+				false };
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int c = 0; c < nCases; c++) {
+				ComplexRegion complexRegion = new ComplexRegion(WIDTH, HEIGHT);
+				for (int a = 0; a < angles.length; a++) {
+					testAngle(complexRegion, angles[a], generic[a], executor);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		for (int c = 0; c < nCases; c++) {
+			testVertices(new ComplexRegion(WIDTH, HEIGHT));
+		}
+		testFlatnessRequired();
+
+		System.out.println(_checks + " checks, " + _failures + " failed");
+		if (_failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static void testAngle(ComplexRegion complexRegion, double angle,
+			boolean generic, ExecutorService executor) throws Exception {
+		String name = "angle " + angle;
+		SensorData perLine = new SensorData(complexRegion, GAP, angle, WIDTH,
+				HEIGHT);
+		List<SensorInterval> positives = perLine.getPositiveIntervals();
+		List<SensorInterval> negatives = perLine.getNegativeIntervals();
+
+		// crossing parity against the regions
+		checkCovered(name + " BUILD_PER_LINE positive", complexRegion,
+				positives, true);
+		checkCovered(name + " BUILD_PER_LINE negative", complexRegion,
+				negatives, false);
+
+		// exact build modes
+		checkSame(name + " BUILD_SWEEP", positives, new SensorData(
+				complexRegion, GAP, angle, WIDTH, HEIGHT,
+				SensorData.BUILD_SWEEP).getPositiveIntervals());
+		checkSame(name + " BUILD_PARALLEL threads", positives,
+				new SensorData(complexRegion, GAP, angle, WIDTH, HEIGHT,
+						SensorData.BUILD_PARALLEL, SensorData.STORE_LIST, 3)
+						.getPositiveIntervals());
+		checkSame(name + " BUILD_PARALLEL executor", positives,
+				new SensorData(complexRegion, GAP, angle, WIDTH, HEIGHT,
+						SensorData.BUILD_PARALLEL, SensorData.STORE_LIST,
+						executor).getPositiveIntervals());
+
+		// storage modes
+		SensorData arrays = new SensorData(complexRegion, GAP, angle, WIDTH,
+				HEIGHT, SensorData.BUILD_PER_LINE, SensorData.STORE_ARRAYS);
+		checkSame(name + " STORE_ARRAYS positive", positives,
+				arrays.getPositiveIntervals());
+		checkSame(name + " STORE_ARRAYS negative", negatives,
+				arrays.getNegativeIntervals());
+		SensorData parametric = new SensorData(complexRegion, GAP, angle,
+				WIDTH, HEIGHT, SensorData.BUILD_PER_LINE,
+				SensorData.STORE_PARAMETRIC);
+		checkSame(name + " STORE_PARAMETRIC positive", positives,
+				parametric.getPositiveIntervals());
+		checkSame(name + " STORE_PARAMETRIC negative", negatives,
+				parametric.getNegativeIntervals());
+
+		// streaming
+		final List<SensorInterval> streamedPositives = new ArrayList<SensorInterval>();
+		final List<SensorInterval> streamedNegatives = new ArrayList<SensorInterval>();
+		SensorData.streamIntervals(complexRegion, GAP, angle, WIDTH, HEIGHT,
+				new SensorIntervalListener() {
+					public void sensorIntervals(int sensorId,
+							List<SensorInterval> positiveIntervals,
+							List<SensorInterval> negativeIntervals)
+							throws IOException {
+						streamedPositives.addAll(positiveIntervals);
+						streamedNegatives.addAll(negativeIntervals);
+					}
+				});
+		checkSame(name + " streamIntervals positive", positives,
+				streamedPositives);
+		checkSame(name + " streamIntervals negative", negatives,
+				streamedNegatives);
+
+		// approximating build modes, at the other angles they may round a
+		// line close to an edge of a region onto it
+		if (generic) {
+			int nSensors = perLine.getSensorCount();
+			checkCoverage(name + " BUILD_FIXED_POINT", nSensors, positives,
+					new SensorData(complexRegion, GAP, angle, WIDTH, HEIGHT,
+							SensorData.BUILD_FIXED_POINT,
+							SensorData.STORE_LIST, FLATNESS)
+							.getPositiveIntervals(), MAX_COVERAGE_DIFF);
+			checkCoverage(name + " BUILD_EDGE_KERNEL", nSensors, positives,
+					new SensorData(complexRegion, GAP, angle, WIDTH, HEIGHT,
+							SensorData.BUILD_EDGE_KERNEL,
+							SensorData.STORE_LIST, FLATNESS)
+							.getPositiveIntervals(), MAX_COVERAGE_DIFF);
+		}
+	}
+
+	/**
+	 * Lines parallel to the diagonal of the canvas at a gap of 3.3 run
+	 * exactly through many of the vertices of the regions, which must count
+	 * as crossings the same way in BUILD_SWEEP as in BUILD_PER_LINE. A line
+	 * through a vertex may give a sliver either way, so the covered length
+	 * of each sensor is compared.
+	 */
+	private static void testVertices(ComplexRegion complexRegion)
+			throws Exception {
+		double angle = Math.atan2(HEIGHT, WIDTH);
+		SensorData perLine = new SensorData(complexRegion, 3.3, angle, WIDTH,
+				HEIGHT);
+		checkCoverage("vertices BUILD_SWEEP", perLine.getSensorCount(),
+				perLine.getPositiveIntervals(), new SensorData(complexRegion,
+						3.3, angle, WIDTH, HEIGHT, SensorData.BUILD_SWEEP)
+						.getPositiveIntervals(), TOLERANCE);
+
+		// a sliver has no direction of its own, the negative intervals of
+		// its sensor must still run along the sensor
+		checkSame("vertices STORE_PARAMETRIC negative",
+				perLine.getNegativeIntervals(), new SensorData(complexRegion,
+						3.3, angle, WIDTH, HEIGHT, SensorData.BUILD_PER_LINE,
+						SensorData.STORE_PARAMETRIC).getNegativeIntervals());
+	}
+
+	/**
+	 * the approximating modes need a flatness
+	 */
+	private static void testFlatnessRequired() throws Exception {
+		ComplexRegion complexRegion = new ComplexRegion(WIDTH, HEIGHT);
+		int[] modes = { SensorData.BUILD_FIXED_POINT,
+				SensorData.BUILD_EDGE_KERNEL };
+		for (int mode : modes) {
+			_checks++;
+			try {
+				new SensorData(complexRegion, GAP, 0.5, WIDTH, HEIGHT, mode);
+				fail("build mode " + mode + " accepted no flatness");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * check points along every interval against the regions applied in
+	 * layer order
+	 */
+	private static void checkCovered(String name, ComplexRegion complexRegion,
+			List<SensorInterval> intervals, boolean covered) {
+		_checks++;
+		Region[] regions = complexRegion.getComplexRegion();
+		int wrong = 0;
+		for (SensorInterval interval : intervals) {
+			Point2D s = interval.getStart(), e = interval.getEnd();
+			double length = s.distance(e) - 2 * SAMPLE_MARGIN;
+			if (length < 0) {
+				continue;
+			}
+			int nSteps = (int) Math.ceil(length / SAMPLE_STEP);
+			for (int k = 0; k <= nSteps; k++) {
+				double d = (SAMPLE_MARGIN + length * k / Math.max(nSteps, 1))
+						/ (length + 2 * SAMPLE_MARGIN);
+				double x = s.getX() + (e.getX() - s.getX()) * d;
+				double y = s.getY() + (e.getY() - s.getY()) * d;
+				if (isCovered(regions, x, y) != covered) {
+					wrong++;
+					break;
+				}
+			}
+		}
+		if (wrong > 0) {
+			fail(name + ": " + wrong + " of " + intervals.size()
+					+ " intervals on the wrong side of the regions");
+		}
+	}
+
+	/**
+	 * a point is covered if the deepest layer of the regions containing it
+	 * is not a hole
+	 */
+	private static boolean isCovered(Region[] regions, double x, double y) {
+		int deepest = -1;
+		for (Region r : regions) {
+			if (r.getLayer() > deepest && r.getShape().contains(x, y)) {
+				deepest = r.getLayer();
+			}
+		}
+		return deepest >= 0 && deepest % 2 == 0;
+	}
+
+	/**
+	 * check two lists hold the same intervals in the same order, an interval
+	 * may run either way
+	 */
+	private static void checkSame(String name, List<SensorInterval> expected,
+			List<SensorInterval> actual) {
+		_checks++;
+		expected = normalize(expected);
+		actual = normalize(actual);
+		if (expected.size() != actual.size()) {
+			fail(name + ": " + actual.size() + " intervals instead of "
+					+ expected.size());
+			return;
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			SensorInterval a = expected.get(i), b = actual.get(i);
+			boolean same = a.getSensorID() == b.getSensorID()
+					&& (a.getStart().distance(b.getStart()) <= TOLERANCE
+							&& a.getEnd().distance(b.getEnd()) <= TOLERANCE || a
+							.getStart().distance(b.getEnd()) <= TOLERANCE
+							&& a.getEnd().distance(b.getStart()) <= TOLERANCE);
+			if (!same) {
+				fail(name + ": interval " + i + " is " + toString(b)
+						+ " instead of " + toString(a));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Leave out the intervals shorter than TOLERANCE and join the intervals
+	 * of a sensor closer than it. A line through a vertex of a region may
+	 * touch it or not depending on rounding, which only adds or removes
+	 * such a sliver.
+	 */
+	private static List<SensorInterval> normalize(List<SensorInterval> intervals) {
+		List<SensorInterval> normalized = new ArrayList<SensorInterval>();
+		for (SensorInterval interval : intervals) {
+			if (interval.getStart().distance(interval.getEnd()) < TOLERANCE) {
+				continue;
+			}
+			int last = normalized.size() - 1;
+			if (last >= 0) {
+				SensorInterval previous = normalized.get(last);
+				if (previous.getSensorID() == interval.getSensorID()
+						&& previous.getEnd().distance(interval.getStart()) < TOLERANCE) {
+					normalized.set(last, new SensorInterval(
+							interval.getSensorID(), previous.getStart(),
+							interval.getEnd()));
+					continue;
+				}
+			}
+			normalized.add(interval);
+		}
+		return normalized;
+	}
+
+	/**
+	 * check two lists cover about the same length of every sensor
+	 */
+	private static void checkCoverage(String name, int nSensors,
+			List<SensorInterval> expected, List<SensorInterval> actual,
+			double maxDiff) {
+		_checks++;
+		double[] expectedLength = getCoveredLength(nSensors, expected);
+		double[] actualLength = getCoveredLength(nSensors, actual);
+		for (int i = 1; i <= nSensors; i++) {
+			double diff = Math.abs(expectedLength[i] - actualLength[i]);
+			if (diff > maxDiff) {
+				fail(name + ": sensor " + i + " covers " + actualLength[i]
+						+ " instead of " + expectedLength[i]);
+				return;
+			}
+		}
+	}
+
+	private static double[] getCoveredLength(int nSensors,
+			List<SensorInterval> intervals) {
+		double[] length = new double[nSensors + 1];
+		for (SensorInterval interval : intervals) {
+			length[interval.getSensorID()] += interval.getStart().distance(
+					interval.getEnd());
+		}
+		return length;
+	}
+
+	private static String toString(SensorInterval interval) {
+		return "Sensor" + interval.getSensorID() + " ["
+				+ interval.getStart().getX() + ","
+				+ interval.getStart().getY() + "] ["
+				+ interval.getEnd().getX() + "," + interval.getEnd().getY()
+				+ "]";
+	}
+
+	private static void fail(String message) {
+		_failures++;
+		System.out.println("FAILED " + message);
+	}
+}
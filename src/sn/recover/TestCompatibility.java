@@ -0,0 +1,150 @@
+package sn.recover;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sn.regiondetect.ComplexRegion;
+import sn.regiondetect.Region;
+
+/**
+ * Check that every check mode of SensorData.isCompatible and
+ * getCompatibilityMatrix gives the result of CHECK_PAIRWISE, on sensor data
+ * of random complex regions at several angles, gaps and storage modes.
+ *
+ * Sensor data of the same complex region is compatible, sensor data of two
+ * unrelated complex regions is not, and a complex region with one region
+ * moved by a pixel gives pairs on either side.
+ *
+ * Usage TestCompatibility [number of complex regions], exits with 1 if a
+ * check fails.
+ *
+ * @author
+ *
+ */
+public class TestCompatibility {
+
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	private static final int[] CHECK_MODES = { SensorData.CHECK_SWEEP,
+			SensorData.CHECK_LATTICE, SensorData.CHECK_GRID };
+
+	private static int _checks = 0;
+	private static int _failures = 0;
+
+	public static void main(String argv[]) throws Exception {
+		int nCases = argv.length > 0 ? Integer.parseInt(argv[0]) : 4;
+
+		int nCompatible = 0, nPairs = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int c = 0; c < nCases; c++) {
+				List<SensorData> data = getSensorData(c);
+				boolean[][] expected = new boolean[data.size()][data.size()];
+				for (int i = 0; i < data.size(); i++) {
+					for (int j = 0; j < data.size(); j++) {
+						expected[i][j] = data.get(i).isCompatible(data.get(j),
+								SensorData.CHECK_PAIRWISE);
+						nPairs++;
+						if (expected[i][j]) {
+							nCompatible++;
+						}
+					}
+				}
+
+				for (int mode : CHECK_MODES) {
+					testPairs("check mode " + mode, data, mode, expected);
+				}
+				for (int mode = SensorData.CHECK_PAIRWISE; mode <= SensorData.CHECK_GRID; mode++) {
+					checkMatrix("matrix of check mode " + mode + " threads",
+							expected,
+							SensorData.getCompatibilityMatrix(data, mode, 3));
+					checkMatrix("matrix of check mode " + mode + " executor",
+							expected, SensorData.getCompatibilityMatrix(data,
+									mode, executor));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		System.out.println(nCompatible + " of " + nPairs
+				+ " pairs compatible");
+		System.out.println(_checks + " checks, " + _failures + " failed");
+		if (_failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * sensor data of a complex region, of another one and of the first one
+	 * with a region moved
+	 */
+	private static List<SensorData> getSensorData(int c) throws Exception {
+		ComplexRegion complexRegion = new ComplexRegion(WIDTH, HEIGHT);
+		ComplexRegion other = new ComplexRegion(WIDTH, HEIGHT);
+		Region[] regions = complexRegion.getComplexRegion();
+		Region[] moved = regions.clone();
+		moved[0] = regions[0].translate(c % 3, 1);
+		ComplexRegion changed = new ComplexRegion(moved, WIDTH, HEIGHT);
+
+		List<SensorData> data = new ArrayList<SensorData>();
+		for (int i = 0; i < 3; i++) {
+			data.add(new SensorData(complexRegion, 5, 0.2 + i * 1.0, WIDTH,
+					HEIGHT));
+			data.add(new SensorData(other, 5, 0.5 + i * 0.9, WIDTH, HEIGHT,
+					SensorData.BUILD_PER_LINE, SensorData.STORE_ARRAYS));
+			data.add(new SensorData(changed, 5, 0.35 + i * 0.8, WIDTH,
+					HEIGHT, SensorData.BUILD_PER_LINE,
+					SensorData.STORE_PARAMETRIC));
+		}
+		data.add(new SensorData(complexRegion, 7, 0.2, WIDTH, HEIGHT));
+		// vertical lines, at a gap of which no multiple is a whole number so
+		// they do not run along the edges of the regions
+		data.add(new SensorData(complexRegion, Math.sqrt(11), Math.PI / 2,
+				WIDTH, HEIGHT));
+		return data;
+	}
+
+	/**
+	 * check isCompatible of every pair against CHECK_PAIRWISE
+	 */
+	private static void testPairs(String name, List<SensorData> data,
+			int checkMode, boolean[][] expected) {
+		_checks++;
+		int wrong = 0;
+		for (int i = 0; i < data.size(); i++) {
+			for (int j = 0; j < data.size(); j++) {
+				if (data.get(i).isCompatible(data.get(j), checkMode) != expected[i][j]) {
+					wrong++;
+				}
+			}
+		}
+		if (wrong > 0) {
+			fail(name + ": " + wrong + " pairs differ from CHECK_PAIRWISE");
+		}
+	}
+
+	private static void checkMatrix(String name, boolean[][] expected,
+			boolean[][] matrix) {
+		_checks++;
+		int wrong = 0;
+		for (int i = 0; i < expected.length; i++) {
+			for (int j = 0; j < expected.length; j++) {
+				if (matrix[i][j] != expected[i][j]) {
+					wrong++;
+				}
+			}
+		}
+		if (wrong > 0) {
+			fail(name + ": " + wrong + " cells differ from CHECK_PAIRWISE");
+		}
+	}
+
+	private static void fail(String message) {
+		_failures++;
+		System.out.println("FAILED " + message);
+	}
+}
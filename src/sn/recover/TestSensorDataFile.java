@@ -0,0 +1,154 @@
+package sn.recover;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import sn.regiondetect.ComplexRegion;
+
+/**
+ * Check that sensor data written by SensorDataFile reads back the same, for
+ * every storage mode, with and without the negative intervals, and that
+ * files which are not complete sensor data files are rejected.
+ *
+ * Stored intervals must read back exactly. Negative intervals left out of
+ * the file are derived again, from primitive storage, so they only need to
+ * match to TOLERANCE.
+ *
+ * Usage TestSensorDataFile [number of complex regions], exits with 1 if a
+ * check fails.
+ *
+ * @author
+ *
+ */
+public class TestSensorDataFile {
+
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	// largest distance of two end points of the same derived interval
+	private static final double TOLERANCE = 1e-6;
+
+	private static final int[] STORAGE_MODES = { SensorData.STORE_LIST,
+			SensorData.STORE_ARRAYS, SensorData.STORE_PARAMETRIC };
+
+	private static int _checks = 0;
+	private static int _failures = 0;
+
+	public static void main(String argv[]) throws Exception {
+		int nCases = argv.length > 0 ? Integer.parseInt(argv[0]) : 3;
+		double[] angles = { 0.3, 1.1, Math.PI / 2, 2.6 };
+
+		File file = File.createTempFile("sensordata", ".bin");
+		file.deleteOnExit();
+		String fileName = file.getPath();
+		try {
+			for (int c = 0; c < nCases; c++) {
+				ComplexRegion complexRegion = new ComplexRegion(WIDTH, HEIGHT);
+				for (double angle : angles) {
+					for (int storage : STORAGE_MODES) {
+						SensorData data = new SensorData(complexRegion, 5,
+								angle, WIDTH, HEIGHT,
+								SensorData.BUILD_PER_LINE, storage);
+						String name = "angle " + angle + " storage "
+								+ storage;
+						testRoundTrip(name + " with negatives", data,
+								fileName, true);
+						testRoundTrip(name + " without negatives", data,
+								fileName, false);
+					}
+				}
+			}
+			testRejected(fileName);
+		} finally {
+			file.delete();
+		}
+
+		System.out.println(_checks + " checks, " + _failures + " failed");
+		if (_failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static void testRoundTrip(String name, SensorData data,
+			String fileName, boolean withNegatives) throws IOException {
+		SensorDataFile.write(data, fileName, withNegatives);
+		SensorData read = SensorDataFile.read(fileName);
+
+		_checks++;
+		if (read.getAngle() != data.getAngle()
+				|| read.getGap() != data.getGap()
+				|| read.getSensorCount() != data.getSensorCount()
+				|| read.getWidth() != data.getWidth()
+				|| read.getHeight() != data.getHeight()) {
+			fail(name + ": header differs");
+		}
+		checkSame(name + " positive", data.getPositiveIntervals(),
+				read.getPositiveIntervals(), 0);
+		checkSame(name + " negative", data.getNegativeIntervals(),
+				read.getNegativeIntervals(), withNegatives ? 0 : TOLERANCE);
+	}
+
+	/**
+	 * files that are too short, of another kind or cut off must not be read
+	 */
+	private static void testRejected(String fileName) throws Exception {
+		FileOutputStream out = new FileOutputStream(fileName);
+		out.write(new byte[10]);
+		out.close();
+		checkRejected("short file", fileName);
+
+		out = new FileOutputStream(fileName);
+		out.write(new byte[SensorDataFile.HEADER_BYTES
+				+ SensorDataFile.INTERVAL_BYTES]);
+		out.close();
+		checkRejected("file without magic number", fileName);
+
+		SensorData data = new SensorData(new ComplexRegion(WIDTH, HEIGHT), 5,
+				0.7, WIDTH, HEIGHT);
+		SensorDataFile.write(data, fileName);
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		file.setLength(file.length() - 8);
+		file.close();
+		checkRejected("truncated file", fileName);
+	}
+
+	private static void checkRejected(String name, String fileName) {
+		_checks++;
+		try {
+			SensorDataFile.read(fileName);
+			fail(name + " was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * check two lists hold the same intervals in the same order
+	 */
+	private static void checkSame(String name, List<SensorInterval> expected,
+			List<SensorInterval> actual, double tolerance) {
+		_checks++;
+		if (expected.size() != actual.size()) {
+			fail(name + ": " + actual.size() + " intervals instead of "
+					+ expected.size());
+			return;
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			SensorInterval a = expected.get(i), b = actual.get(i);
+			if (a.getSensorID() != b.getSensorID()
+					|| a.getStart().distance(b.getStart()) > tolerance
+					|| a.getEnd().distance(b.getEnd()) > tolerance) {
+				fail(name + ": interval " + i + " differs");
+				return;
+			}
+		}
+	}
+
+	private static void fail(String message) {
+		_failures++;
+		System.out.println("FAILED " + message);
+	}
+}
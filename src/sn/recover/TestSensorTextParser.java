@@ -0,0 +1,222 @@
+package sn.recover;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Random;
+
+/**
+ * Check that SensorTextParser reads every coordinate of the
+ * "SensorN [x,y] [x,y]" format to the same double as Double.parseDouble,
+ * for random doubles in the forms the writers give and in other decimal
+ * forms, for the edge cases of the conversion, and through a reader that
+ * splits the text at random places. Malformed lines must throw a
+ * NumberFormatException.
+ *
+ * Usage TestSensorTextParser [number of random lines], exits with 1 if a
+ * check fails.
+ *
+ * @author
+ *
+ */
+public class TestSensorTextParser {
+
+	private static final String[] EDGE_CASES = { "0.0", "-0.0", "4.9E-324",
+			"2.2250738585072014E-308", "2.225073858507201E-308",
+			"1.7976931348623157E308", "1.7976931348623158E308", "1.8E308",
+			"NaN", "Infinity", "-Infinity", "9007199254740993",
+			"9007199254740992.0", "0.1", "1e23", "8.41E21",
+			"1.00000000000000011102230246251565404236316680908203125",
+			"1.00000000000000011102230246251565404236316680908203124",
+			"123456789012345678901234567890",
+			"0.000000000000000000000000000001", "1E-400", "1E400" };
+
+	private static final String[] MALFORMED = { "Sensor1 [1,2] [3,4",
+			"Sensr1 [1,2] [3,4]", "Sensor1 [1,2] [3,4] x",
+			"Sensor [1,2] [3,4]", "Sensor1 [1,2x] [3,4]",
+			"Sensor1 [1,] [3,4]" };
+
+	private static int _checks = 0;
+	private static int _failures = 0;
+
+	public static void main(String argv[]) throws Exception {
+		int nLines = argv.length > 0 ? Integer.parseInt(argv[0]) : 100000;
+		Random random = new Random(7);
+
+		for (int i = 0; i < nLines; i++) {
+			checkLine(i, randomNumber(random), randomNumber(random),
+					randomNumber(random), randomNumber(random));
+		}
+		for (String a : EDGE_CASES) {
+			for (String b : EDGE_CASES) {
+				checkLine(1, a, b, "1.5", "2");
+			}
+		}
+		testReader(random, nLines);
+		for (String line : MALFORMED) {
+			checkMalformed(line);
+		}
+
+		System.out.println(_checks + " checks, " + _failures + " failed");
+		if (_failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * parse one line and compare its values with Double.parseDouble, bit for
+	 * bit
+	 */
+	private static void checkLine(int sensorId, String x1, String y1,
+			String x2, String y2) throws IOException {
+		_checks++;
+		String line = "Sensor" + sensorId + " [" + x1 + "," + y1 + "] [" + x2
+				+ "," + y2 + "]";
+		SensorTextParser parser = new SensorTextParser(line);
+		if (!parser.next()) {
+			fail(line + ": no interval");
+			return;
+		}
+		String[] text = { x1, y1, x2, y2 };
+		double[] values = { parser.getX1(), parser.getY1(), parser.getX2(),
+				parser.getY2() };
+		for (int k = 0; k < 4; k++) {
+			if (Double.doubleToRawLongBits(Double.parseDouble(text[k])) != Double
+					.doubleToRawLongBits(values[k])) {
+				fail(line + ": " + text[k] + " read as " + values[k]);
+				return;
+			}
+		}
+		if (parser.getSensorID() != sensorId) {
+			fail(line + ": sensor " + parser.getSensorID());
+		}
+	}
+
+	/**
+	 * a file of the format written by SensorData, with CRLF and LF line ends
+	 * and empty lines, read in chunks of random size
+	 */
+	private static void testReader(Random random, int nLines)
+			throws IOException {
+		_checks++;
+		double[][] expected = new double[nLines][4];
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < nLines; i++) {
+			expected[i][0] = random.nextDouble() * 800;
+			expected[i][1] = random.nextDouble() * 600;
+			expected[i][2] = random.nextDouble() * 800;
+			expected[i][3] = random.nextDouble() * 600;
+			text.append("Sensor" + i + " [" + expected[i][0] + ","
+					+ expected[i][1] + "] [" + expected[i][2] + ","
+					+ expected[i][3] + "]");
+			text.append(i % 3 == 0 ? "\r\n" : "\n");
+			if (i % 1000 == 0) {
+				text.append("\n");
+			}
+		}
+
+		SensorTextParser parser = new SensorTextParser(new ChunkedReader(
+				text.toString(), new Random(1)));
+		int n = 0;
+		while (parser.next()) {
+			if (n >= nLines || parser.getSensorID() != n
+					|| parser.getX1() != expected[n][0]
+					|| parser.getY1() != expected[n][1]
+					|| parser.getX2() != expected[n][2]
+					|| parser.getY2() != expected[n][3]) {
+				fail("reader: line " + n + " differs");
+				return;
+			}
+			n++;
+		}
+		parser.close();
+		if (n != nLines) {
+			fail("reader: " + n + " lines instead of " + nLines);
+		}
+	}
+
+	private static void checkMalformed(String line) throws IOException {
+		_checks++;
+		try {
+			new SensorTextParser(line).next();
+			fail(line + ": accepted");
+		} catch (NumberFormatException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * a number as Double.toString writes it, or in another decimal form
+	 */
+	private static String randomNumber(Random random) {
+		switch (random.nextInt(7)) {
+		case 0:
+			return Double.toString(Double.longBitsToDouble(random.nextLong()));
+		case 1:
+			return Double.toString(random.nextDouble() * 2000 - 500);
+		case 2:
+			return Double.toString((float) (random.nextDouble() * 800));
+		case 3: {
+			// long mantissas, with or without an exponent
+			StringBuilder number = new StringBuilder();
+			if (random.nextBoolean()) {
+				number.append('-');
+			}
+			int nDigits = 1 + random.nextInt(25);
+			for (int i = 0; i < nDigits; i++) {
+				number.append((char) ('0' + random.nextInt(10)));
+			}
+			number.append('.');
+			nDigits = random.nextInt(25);
+			for (int i = 0; i < nDigits; i++) {
+				number.append((char) ('0' + random.nextInt(10)));
+			}
+			if (random.nextInt(3) == 0) {
+				number.append("E" + (random.nextInt(700) - 350));
+			}
+			return number.toString();
+		}
+		case 4:
+			return Integer.toString(random.nextInt(2000) - 1000);
+		case 5:
+			return Double.toString(random.nextInt(100000) / 100.0);
+		default:
+			return Double.toString(Math.pow(10, random.nextInt(640) - 330)
+					* (1 + random.nextDouble()));
+		}
+	}
+
+	private static void fail(String message) {
+		_failures++;
+		System.out.println("FAILED " + message);
+	}
+
+	/**
+	 * a reader that returns at most a random number of characters per read
+	 */
+	private static class ChunkedReader extends Reader {
+		private String _text;
+		private Random _random;
+		private int _position = 0;
+
+		public ChunkedReader(String text, Random random) {
+			_text = text;
+			_random = random;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			if (_position >= _text.length()) {
+				return -1;
+			}
+			int n = Math.min(Math.min(length, 1 + _random.nextInt(200)),
+					_text.length() - _position);
+			_text.getChars(_position, _position + n, buffer, offset);
+			_position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
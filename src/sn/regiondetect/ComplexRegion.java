@@ -30,6 +30,10 @@ public class ComplexRegion {
 	final private static int _maxLayer = 7;
 	final private static int _minLayer = 4;
 
+	// flatness of the outlines candidate centres are tested against, a
+	// centre only needs to be roughly outside the other regions
+	final private static double _centreFlatness = 1.0;
+
 	private Region[] _complexRegion;
 
 	private int _caseID;
@@ -53,6 +57,20 @@ public class ComplexRegion {
 		_caseID = -1;
 	}
 
+	/**
+	 * Constructor takes regions in layer order and canvas width and height
+	 * 
+	 * @param regions
+	 * @param width
+	 * @param height
+	 */
+	public ComplexRegion(Region[] regions, int width, int height) {
+		_width = width;
+		_height = height;
+		_complexRegion = regions;
+		_caseID = -1;
+	}
+
 	/**
 	 * Constructor takes a file
 	 * 
@@ -481,7 +499,8 @@ public class ComplexRegion {
 			boolean inside = false;
 			centre.setLocation(r.nextInt(width), r.nextInt(height));
 			for (int i = 0; i < nPolygon; i++) {
-				if (regions[i].getShape().contains(centre)) {
+				if (regions[i].containsFlattened(centre.x, centre.y,
+						_centreFlatness)) {
 					inside = true;
 					break;
 				}
@@ -0,0 +1,198 @@
+package sn.regiondetect;
+
+import java.util.Arrays;
+
+/**
+ * Build the positive intervals of one sensor line from the boundary
+ * crossings of all regions at once.
+ *
+ * Every crossing is an event tagged with its region and the region's layer.
+ * The events are sorted once and swept in order: each event toggles whether
+ * the line is inside its region, and a coverage counter per layer records
+ * how many regions of that layer cover the current position. A position is
+ * positive when the deepest covering layer is a solid one (even layer), so
+ * a hole cuts out of the solid regions below it and a solid region inside a
+ * hole fills it again. This gives the same result as applying the regions
+ * one after another in layer order, in O(k log k) for k crossings.
+ *
+ * @author
+ *
+ */
+public class CrossingParityBuilder {
+
+	// events of the current line
+	private double[] _params;
+	private int[] _regions;
+	private int[] _layers;
+	private int _nEvents;
+
+	// inside state of each region and coverage count of each layer
+	private boolean[] _inside;
+	private int[] _layerCount;
+
+	/**
+	 * Constructor
+	 */
+	public CrossingParityBuilder() {
+		_params = new double[32];
+		_regions = new int[32];
+		_layers = new int[32];
+		_nEvents = 0;
+		_inside = new boolean[16];
+		_layerCount = new int[8];
+	}
+
+	/**
+	 * remove all crossings, to start a new line
+	 */
+	public void reset() {
+		_nEvents = 0;
+	}
+
+	public int getCrossingCount() {
+		return _nEvents;
+	}
+
+	/**
+	 * add a crossing of the line with the boundary of a region
+	 *
+	 * @param t
+	 *            parameter of the crossing along the line
+	 * @param region
+	 *            index of the region, starting from 0
+	 * @param layer
+	 *            layer of the region, odd layers are holes
+	 */
+	public void addCrossing(double t, int region, int layer) {
+		if (_nEvents == _params.length) {
+			int capacity = _nEvents * 2;
+			_params = Arrays.copyOf(_params, capacity);
+			_regions = Arrays.copyOf(_regions, capacity);
+			_layers = Arrays.copyOf(_layers, capacity);
+		}
+		_params[_nEvents] = t;
+		_regions[_nEvents] = region;
+		_layers[_nEvents] = layer;
+		_nEvents++;
+
+		if (region >= _inside.length) {
+			_inside = Arrays.copyOf(_inside,
+					Math.max(region + 1, _inside.length * 2));
+		}
+		if (layer >= _layerCount.length) {
+			_layerCount = Arrays.copyOf(_layerCount,
+					Math.max(layer + 1, _layerCount.length * 2));
+		}
+	}
+
+	/**
+	 * add all crossings of the line with a region
+	 *
+	 * @param params
+	 *            parameters of the crossings along the line
+	 * @param region
+	 *            index of the region, starting from 0
+	 * @param p
+	 *            the region
+	 */
+	public void addCrossings(double[] params, int region, Region p) {
+		for (int i = 0; i < params.length; i++) {
+			addCrossing(params[i], region, p.getLayer());
+		}
+	}
+
+	/**
+	 * sweep the crossings added since the last reset
+	 *
+	 * @return positive intervals as sorted start/end parameter pairs
+	 */
+	public double[] build() {
+		sort(0, _nEvents - 1);
+
+		Arrays.fill(_inside, false);
+		Arrays.fill(_layerCount, 0);
+		int topLayer = -1;
+
+		double[] intervals = new double[_nEvents];
+		int n = 0;
+		boolean positive = false;
+
+		int i = 0;
+		while (i < _nEvents) {
+			// apply all events at the same position before deciding
+			double t = _params[i];
+			while (i < _nEvents && _params[i] == t) {
+				int region = _regions[i];
+				int layer = _layers[i];
+				_inside[region] = !_inside[region];
+				if (_inside[region]) {
+					_layerCount[layer]++;
+					if (layer > topLayer) {
+						topLayer = layer;
+					}
+				} else {
+					_layerCount[layer]--;
+					while (topLayer >= 0 && _layerCount[topLayer] == 0) {
+						topLayer--;
+					}
+				}
+				i++;
+			}
+
+			boolean nowPositive = topLayer >= 0 && topLayer % 2 == 0;
+			if (nowPositive != positive) {
+				intervals[n++] = t;
+				positive = nowPositive;
+			}
+		}
+
+		return Arrays.copyOf(intervals, n - n % 2);
+	}
+
+	/**
+	 * quicksort of the events by parameter
+	 */
+	private void sort(int lo, int hi) {
+		while (hi - lo > 16) {
+			double pivot = _params[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (_params[i] < pivot) {
+					i++;
+				}
+				while (_params[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			// recurse into the smaller part
+			if (j - lo < hi - i) {
+				sort(lo, j);
+				lo = i;
+			} else {
+				sort(i, hi);
+				hi = j;
+			}
+		}
+		// insertion sort for small ranges
+		for (int i = lo + 1; i <= hi; i++) {
+			for (int j = i; j > lo && _params[j] < _params[j - 1]; j--) {
+				swap(j, j - 1);
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		double t = _params[i];
+		_params[i] = _params[j];
+		_params[j] = t;
+		int r = _regions[i];
+		_regions[i] = _regions[j];
+		_regions[j] = r;
+		int l = _layers[i];
+		_layers[i] = _layers[j];
+		_layers[j] = l;
+	}
+}
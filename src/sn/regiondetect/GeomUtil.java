@@ -17,6 +17,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -399,6 +400,78 @@ public class GeomUtil {
 	 */
 	public static Set<Point2D> getIntersections(Path2D path, Line2D line,
 			double lineAngle, int width, int height) throws Exception {
+		return getIntersections(path, line, lineAngle, width, height, false);
+	}
+
+	/**
+	 * Get intersecting part of a line and an area
+	 * 
+	 * @param path
+	 * @param line
+	 * @param useArea
+	 *            true to intersect a bold line with the region as Areas, false
+	 *            to solve line/segment and line/curve crossings analytically
+	 * @return a set of point as intersections
+	 * @throws Exception
+	 */
+	public static Set<Point2D> getIntersections(Path2D path, Line2D line,
+			double lineAngle, int width, int height, boolean useArea)
+			throws Exception {
+		if (useArea) {
+			return getAreaIntersections(path, line, lineAngle, width, height);
+		}
+		return getAnalyticIntersections(path, line);
+	}
+
+	/**
+	 * Get intersecting points of a line and a path by solving the crossings
+	 * of the line with each line and cubic segment of the path
+	 * 
+	 * @param path
+	 * @param line
+	 * @return a set of points as intersections, ordered along the line
+	 * @throws Exception
+	 */
+	public static Set<Point2D> getAnalyticIntersections(Path2D path,
+			Line2D line) throws Exception {
+		Set<Point2D> intersections = new LinkedHashSet<Point2D>();
+
+		double ox = line.getX1();
+		double oy = line.getY1();
+		double dx = line.getX2() - ox;
+		double dy = line.getY2() - oy;
+		double len = Math.sqrt(dx * dx + dy * dy);
+		if (len == 0) {
+			return intersections;
+		}
+		double ux = dx / len;
+		double uy = dy / len;
+
+		double[] crossings = PathIntersector.getCrossings(path, ox, oy, ux, uy);
+		for (int i = 0; i < crossings.length; i++) {
+			// two crossings at the same point enclose nothing
+			if (i + 1 < crossings.length && crossings[i] == crossings[i + 1]) {
+				i++;
+				continue;
+			}
+			intersections.add(new Point2D.Double(ox + crossings[i] * ux, oy
+					+ crossings[i] * uy));
+		}
+
+		return intersections;
+	}
+
+	/**
+	 * Get intersecting part of a line and an area by intersecting the area
+	 * with a bold line
+	 * 
+	 * @param path
+	 * @param line
+	 * @return a set of point as intersections
+	 * @throws Exception
+	 */
+	public static Set<Point2D> getAreaIntersections(Path2D path, Line2D line,
+			double lineAngle, int width, int height) throws Exception {
 		// List to hold found intersections
 
 		Set<Point2D> intersections = new HashSet<Point2D>();
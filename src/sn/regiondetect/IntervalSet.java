@@ -0,0 +1,196 @@
+package sn.regiondetect;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A set of disjoint closed intervals on a line, kept sorted in a balanced
+ * tree keyed by interval start.
+ *
+ * Adding an interval merges it with every interval it overlaps or touches,
+ * subtracting an interval cuts it out of the set, both in O(log n) plus the
+ * number of intervals merged or removed. Iteration is in ascending order.
+ *
+ * @author
+ *
+ */
+public class IntervalSet implements Iterable<double[]> {
+
+	// start -> end of each interval
+	private TreeMap<Double, Double> _intervals;
+
+	/**
+	 * Constructor of an empty set
+	 */
+	public IntervalSet() {
+		_intervals = new TreeMap<Double, Double>();
+	}
+
+	/**
+	 * add an interval, merging it with overlapping intervals
+	 *
+	 * @param start
+	 * @param end
+	 */
+	public void add(double start, double end) {
+		if (start > end) {
+			double tmp = start;
+			start = end;
+			end = tmp;
+		}
+
+		// merge with the interval starting before this one
+		Map.Entry<Double, Double> before = _intervals.floorEntry(start);
+		if (before != null && before.getValue() >= start) {
+			start = before.getKey();
+			end = Math.max(end, before.getValue());
+		}
+
+		// merge with all intervals starting inside this one
+		NavigableMap<Double, Double> covered = _intervals.subMap(start, true,
+				end, true);
+		if (!covered.isEmpty()) {
+			end = Math.max(end, covered.lastEntry().getValue());
+			covered.clear();
+		}
+
+		_intervals.put(start, end);
+	}
+
+	/**
+	 * remove an interval from the set, cutting intervals that overlap it
+	 *
+	 * @param start
+	 * @param end
+	 */
+	public void subtract(double start, double end) {
+		if (start > end) {
+			double tmp = start;
+			start = end;
+			end = tmp;
+		}
+
+		// cut the interval starting before this one
+		Map.Entry<Double, Double> before = _intervals.lowerEntry(start);
+		if (before != null && before.getValue() > start) {
+			double beforeEnd = before.getValue();
+			_intervals.put(before.getKey(), start);
+			if (beforeEnd > end) {
+				_intervals.put(end, beforeEnd);
+				return;
+			}
+		}
+
+		// remove all intervals starting inside this one, keeping the part of
+		// the last one beyond the end
+		NavigableMap<Double, Double> covered = _intervals.subMap(start, true,
+				end, true);
+		if (!covered.isEmpty()) {
+			double lastEnd = covered.lastEntry().getValue();
+			covered.clear();
+			if (lastEnd > end) {
+				_intervals.put(end, lastEnd);
+			}
+		}
+	}
+
+	/**
+	 * test if a point is in one of the intervals
+	 *
+	 * @param t
+	 * @return
+	 */
+	public boolean contains(double t) {
+		Map.Entry<Double, Double> before = _intervals.floorEntry(t);
+		return before != null && before.getValue() >= t;
+	}
+
+	public int size() {
+		return _intervals.size();
+	}
+
+	public boolean isEmpty() {
+		return _intervals.isEmpty();
+	}
+
+	public void clear() {
+		_intervals.clear();
+	}
+
+	/**
+	 * get the complement of the set within a range
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public IntervalSet complement(double start, double end) {
+		IntervalSet complement = new IntervalSet();
+		double from = start;
+		for (Map.Entry<Double, Double> e : _intervals.entrySet()) {
+			if (e.getKey() > end) {
+				break;
+			}
+			if (e.getKey() > from) {
+				complement._intervals.put(from, e.getKey());
+			}
+			from = Math.max(from, e.getValue());
+		}
+		if (from < end) {
+			complement._intervals.put(from, end);
+		}
+		return complement;
+	}
+
+	/**
+	 * get the intervals as sorted start/end pairs
+	 *
+	 * @return
+	 */
+	public double[] toArray() {
+		double[] pairs = new double[_intervals.size() * 2];
+		int n = 0;
+		for (Map.Entry<Double, Double> e : _intervals.entrySet()) {
+			pairs[n++] = e.getKey();
+			pairs[n++] = e.getValue();
+		}
+		return pairs;
+	}
+
+	/**
+	 * iterate over the intervals in ascending order, each as {start, end}
+	 */
+	@Override
+	public Iterator<double[]> iterator() {
+		final Iterator<Map.Entry<Double, Double>> it = _intervals.entrySet()
+				.iterator();
+		return new Iterator<double[]>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public double[] next() {
+				Map.Entry<Double, Double> e = it.next();
+				return new double[] { e.getKey(), e.getValue() };
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<Double, Double> e : _intervals.entrySet()) {
+			sb.append("[" + e.getKey() + "," + e.getValue() + "]");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,238 @@
+package sn.regiondetect;
+
+import java.awt.geom.Line2D;
+
+/**
+ * The family of parallel sensor lines produced by
+ * <code>GeomUtil.generateParallelLines</code>, described by arithmetic instead
+ * of a list of Line2D.
+ *
+ * Line i (starting from 0) runs from (getTopX(i), 0) to (getTopX(i) +
+ * xOffset, height). A point on a line is identified by its parameter t, the
+ * distance from the top end of the line, so that t = y / sin(angle).
+ * Adjacent lines are <code>gap</code> apart along the normal of the lines.
+ *
+ * @author
+ *
+ */
+public class ParallelLines {
+
+	// lines with a smaller |cos| are taken as vertical
+	private static final double VERTICAL_COS = 1e-9;
+
+	private double _angle;
+	private double _gap;
+	private int _width;
+	private int _height;
+
+	private int _count; // number of lines
+	private double _xTop; // x of the top end of the first line
+	private double _gapInX; // gap between two adjacent lines along x axis
+
+	// unit direction of the lines, pointing from top to bottom
+	private double _cos;
+	private double _sin;
+
+	/**
+	 * Constructor, same parameters as GeomUtil.generateParallelLines
+	 *
+	 * @param gap
+	 * @param angle
+	 * @param width
+	 * @param height
+	 */
+	public ParallelLines(double gap, double angle, int width, int height) {
+		_angle = angle;
+		_gap = gap;
+		_width = width;
+		_height = height;
+
+		double xOffset = (1 / Math.tan(angle)) * height;
+		_gapInX = Math.abs(gap / Math.sin(angle));
+		_count = (int) ((width + Math.abs(xOffset)) / _gapInX) + 1;
+		_xTop = xOffset >= 0 ? 0 - xOffset : 0;
+
+		double len = Math.sqrt(xOffset * xOffset + (double) height * height);
+		_cos = xOffset / len;
+		_sin = height / len;
+	}
+
+	public double getAngle() {
+		return _angle;
+	}
+
+	public double getGap() {
+		return _gap;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	public int getCount() {
+		return _count;
+	}
+
+	public double getCos() {
+		return _cos;
+	}
+
+	public double getSin() {
+		return _sin;
+	}
+
+	/**
+	 * parameter of the bottom end of every line
+	 *
+	 * @return
+	 */
+	public double getLength() {
+		return _height / _sin;
+	}
+
+	/**
+	 * x of the top end of a line
+	 *
+	 * @param index
+	 * @return
+	 */
+	public double getTopX(int index) {
+		return _xTop + index * _gapInX;
+	}
+
+	/**
+	 * signed distance of a point along the normal of the lines
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public double getOffset(double x, double y) {
+		return x * _sin - y * _cos;
+	}
+
+	/**
+	 * offset of a line along the normal of the lines
+	 *
+	 * @param index
+	 * @return
+	 */
+	public double getOffset(int index) {
+		return getTopX(index) * _sin;
+	}
+
+	/**
+	 * index of the first line whose offset is not smaller than the given one
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int getFirstIndex(double offset) {
+		return (int) Math.ceil((offset - _xTop * _sin) / _gap);
+	}
+
+	/**
+	 * index of the last line whose offset is not greater than the given one
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int getLastIndex(double offset) {
+		return (int) Math.floor((offset - _xTop * _sin) / _gap);
+	}
+
+	/**
+	 * parameter of the projection of a point onto the lines
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public double getParam(double x, double y) {
+		return y / _sin;
+	}
+
+	/**
+	 * parameter of the start of SensorInterval.getFullInterval of a line, the
+	 * point where it crosses x = 0 or, if that is off the canvas, the top or
+	 * bottom edge
+	 *
+	 * @param index
+	 * @return
+	 */
+	public double getClipStart(int index) {
+		return getFullY(index, false) / _sin;
+	}
+
+	/**
+	 * parameter of the end of SensorInterval.getFullInterval of a line, the
+	 * point where it crosses x = width or, if that is off the canvas, the top
+	 * or bottom edge. It is smaller than getClipStart when the full interval
+	 * runs upwards.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public double getClipEnd(int index) {
+		return getFullY(index, true) / _sin;
+	}
+
+	/**
+	 * y of an end of the full interval of a line, computed the same way as
+	 * SensorInterval.getFullInterval from the end points of getLine
+	 *
+	 * @param index
+	 * @param end
+	 *            true for the end, false for the start
+	 * @return
+	 */
+	private double getFullY(int index, boolean end) {
+		// a vertical line, cos(PI / 2) is not exactly 0
+		if (Math.abs(_cos) < VERTICAL_COS) {
+			return end ? _height : 0;
+		}
+
+		double x1 = getX(index, 0), y1 = getY(0);
+		double x2 = getX(index, getLength()), y2 = getY(getLength());
+		double w0 = (x1 * y2 - x2 * y1) / (x1 - x2);
+		double w1 = (y1 - y2) / (x1 - x2);
+
+		double y = end ? w0 + w1 * _width : w0;
+		return Math.max(0, Math.min(y, _height));
+	}
+
+	public double getX(int index, double t) {
+		return getTopX(index) + t * _cos;
+	}
+
+	public double getY(double t) {
+		return t * _sin;
+	}
+
+	/**
+	 * get a full line, as generated by GeomUtil.generateParallelLines
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Line2D getLine(int index) {
+		return getLine(index, 0, getLength());
+	}
+
+	/**
+	 * get the part of a line between two parameters
+	 *
+	 * @param index
+	 * @param tStart
+	 * @param tEnd
+	 * @return
+	 */
+	public Line2D getLine(int index, double tStart, double tEnd) {
+		return new Line2D.Double(getX(index, tStart), getY(tStart), getX(
+				index, tEnd), getY(tEnd));
+	}
+}
@@ -0,0 +1,310 @@
+package sn.regiondetect;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Exact crossings of an infinite straight line with a path made of line and
+ * cubic Bezier segments, such as the one emitted by
+ * <code>GeomUtil.getRoundedGeneralPathFromPoints</code>.
+ *
+ * The line is given by a point (ox, oy) and a unit direction (ux, uy). A
+ * crossing is reported as the parameter t of the crossing point along the
+ * line, i.e. the point is (ox + t * ux, oy + t * uy).
+ *
+ * A point is on the "positive" side of the line if its signed distance is
+ * strictly greater than zero, and on the "negative" side otherwise. Every
+ * change of side along a segment is one crossing, so a closed path always
+ * yields an even number of crossings, even when the line passes exactly
+ * through a vertex.
+ *
+ * @author
+ *
+ */
+public class PathIntersector {
+
+	// number of bisection steps used to locate a root on a cubic segment
+	private static final int MAX_BISECTION = 60;
+
+	// stop bisecting once the curve parameter interval is this small
+	private static final double MIN_PARAM_STEP = 1E-12;
+
+	/**
+	 * Get the crossings of a line with a path, sorted along the line
+	 *
+	 * @param path
+	 * @param ox
+	 *            x of a point on the line
+	 * @param oy
+	 *            y of a point on the line
+	 * @param ux
+	 *            x of the unit direction of the line
+	 * @param uy
+	 *            y of the unit direction of the line
+	 * @return sorted line parameters of the crossings
+	 * @throws Exception
+	 */
+	public static double[] getCrossings(Path2D path, double ox, double oy,
+			double ux, double uy) throws Exception {
+		double[] crossings = new double[8];
+		int nCrossings = 0;
+		double[] roots = new double[3];
+		double[] coords = new double[6];
+
+		// start of the current sub-path and the current point
+		double startX = 0, startY = 0, curX = 0, curY = 0;
+		boolean hasStart = false;
+
+		PathIterator it = path.getPathIterator(null);
+		while (!it.isDone()) {
+			int type = it.currentSegment(coords);
+			int nRoots = 0;
+			double x0 = curX, y0 = curY;
+			double x1 = 0, y1 = 0, x2 = 0, y2 = 0, x3 = 0, y3 = 0;
+			boolean cubic = false;
+
+			switch (type) {
+			case PathIterator.SEG_MOVETO: {
+				// close the previous sub-path implicitly
+				if (hasStart && (curX != startX || curY != startY)) {
+					nRoots = lineRoots(curX, curY, startX, startY, ox, oy, ux,
+							uy, roots);
+					x3 = startX;
+					y3 = startY;
+				}
+				startX = coords[0];
+				startY = coords[1];
+				curX = startX;
+				curY = startY;
+				hasStart = true;
+				break;
+			}
+
+			case PathIterator.SEG_LINETO: {
+				x3 = coords[0];
+				y3 = coords[1];
+				nRoots = lineRoots(curX, curY, x3, y3, ox, oy, ux, uy, roots);
+				curX = x3;
+				curY = y3;
+				break;
+			}
+
+			case PathIterator.SEG_QUADTO: {
+				// elevate the quadratic segment to a cubic one
+				x1 = curX + 2.0 / 3.0 * (coords[0] - curX);
+				y1 = curY + 2.0 / 3.0 * (coords[1] - curY);
+				x2 = coords[2] + 2.0 / 3.0 * (coords[0] - coords[2]);
+				y2 = coords[3] + 2.0 / 3.0 * (coords[1] - coords[3]);
+				x3 = coords[2];
+				y3 = coords[3];
+				nRoots = cubicRoots(curX, curY, x1, y1, x2, y2, x3, y3, ox,
+						oy, ux, uy, roots);
+				cubic = true;
+				curX = x3;
+				curY = y3;
+				break;
+			}
+
+			case PathIterator.SEG_CUBICTO: {
+				x1 = coords[0];
+				y1 = coords[1];
+				x2 = coords[2];
+				y2 = coords[3];
+				x3 = coords[4];
+				y3 = coords[5];
+				nRoots = cubicRoots(curX, curY, x1, y1, x2, y2, x3, y3, ox,
+						oy, ux, uy, roots);
+				cubic = true;
+				curX = x3;
+				curY = y3;
+				break;
+			}
+
+			case PathIterator.SEG_CLOSE: {
+				if (curX != startX || curY != startY) {
+					nRoots = lineRoots(curX, curY, startX, startY, ox, oy, ux,
+							uy, roots);
+					x3 = startX;
+					y3 = startY;
+				}
+				curX = startX;
+				curY = startY;
+				break;
+			}
+			default: {
+				throw new Exception("Unsupported PathIterator segment type: "
+						+ type);
+			}
+			}
+
+			// convert curve parameters to line parameters
+			for (int i = 0; i < nRoots; i++) {
+				double s = roots[i];
+				double px, py;
+				if (cubic) {
+					px = cubicAt(x0, x1, x2, x3, s);
+					py = cubicAt(y0, y1, y2, y3, s);
+				} else {
+					px = x0 + (x3 - x0) * s;
+					py = y0 + (y3 - y0) * s;
+				}
+				if (nCrossings == crossings.length) {
+					crossings = Arrays.copyOf(crossings, nCrossings * 2);
+				}
+				crossings[nCrossings++] = (px - ox) * ux + (py - oy) * uy;
+			}
+			it.next();
+		}
+
+		// close the last sub-path implicitly
+		if (hasStart && (curX != startX || curY != startY)) {
+			int nRoots = lineRoots(curX, curY, startX, startY, ox, oy, ux, uy,
+					roots);
+			for (int i = 0; i < nRoots; i++) {
+				double px = curX + (startX - curX) * roots[i];
+				double py = curY + (startY - curY) * roots[i];
+				if (nCrossings == crossings.length) {
+					crossings = Arrays.copyOf(crossings, nCrossings * 2);
+				}
+				crossings[nCrossings++] = (px - ox) * ux + (py - oy) * uy;
+			}
+		}
+
+		crossings = Arrays.copyOf(crossings, nCrossings);
+		Arrays.sort(crossings);
+		return crossings;
+	}
+
+	/**
+	 * Find the crossing of a line segment (x0,y0)-(x1,y1) with the line
+	 *
+	 * @param roots
+	 *            receives the segment parameter in [0,1] of the crossing
+	 * @return number of crossings, 0 or 1
+	 */
+	public static int lineRoots(double x0, double y0, double x1, double y1,
+			double ox, double oy, double ux, double uy, double[] roots) {
+		double d0 = signedDistance(x0, y0, ox, oy, ux, uy);
+		double d1 = signedDistance(x1, y1, ox, oy, ux, uy);
+		if ((d0 > 0) == (d1 > 0)) {
+			return 0;
+		}
+		roots[0] = d0 / (d0 - d1);
+		return 1;
+	}
+
+	/**
+	 * Find the crossings of a cubic Bezier segment with the line
+	 *
+	 * @param roots
+	 *            receives the curve parameters in [0,1] of the crossings, in
+	 *            ascending order
+	 * @return number of crossings, 0 to 3
+	 */
+	public static int cubicRoots(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x3, double y3, double ox, double oy,
+			double ux, double uy, double[] roots) {
+		// signed distances of the control points are the Bernstein
+		// coefficients of the signed distance along the curve
+		double d0 = signedDistance(x0, y0, ox, oy, ux, uy);
+		double d1 = signedDistance(x1, y1, ox, oy, ux, uy);
+		double d2 = signedDistance(x2, y2, ox, oy, ux, uy);
+		double d3 = signedDistance(x3, y3, ox, oy, ux, uy);
+
+		// the curve lies in the hull of its control points
+		if (d0 > 0 && d1 > 0 && d2 > 0 && d3 > 0) {
+			return 0;
+		}
+		if (d0 <= 0 && d1 <= 0 && d2 <= 0 && d3 <= 0) {
+			return 0;
+		}
+
+		// power basis f(s) = a s^3 + b s^2 + c s + d0
+		double a = -d0 + 3 * d1 - 3 * d2 + d3;
+		double b = 3 * d0 - 6 * d1 + 3 * d2;
+		double c = -3 * d0 + 3 * d1;
+
+		// split [0,1] into monotone pieces at the roots of f'(s)
+		double[] bounds = new double[4];
+		int nBounds = 0;
+		bounds[nBounds++] = 0;
+		double qa = 3 * a, qb = 2 * b, qc = c;
+		double scale = Math.abs(qa) + Math.abs(qb) + Math.abs(qc);
+		if (Math.abs(qa) > 1E-12 * scale) {
+			double disc = qb * qb - 4 * qa * qc;
+			if (disc >= 0) {
+				double sq = Math.sqrt(disc);
+				// numerically stable quadratic roots
+				double q = qb >= 0 ? -0.5 * (qb + sq) : -0.5 * (qb - sq);
+				double r1 = q / qa;
+				double r2 = q != 0 ? qc / q : r1;
+				if (r1 > r2) {
+					double tmp = r1;
+					r1 = r2;
+					r2 = tmp;
+				}
+				if (r1 > 0 && r1 < 1) {
+					bounds[nBounds++] = r1;
+				}
+				if (r2 > 0 && r2 < 1 && r2 != r1) {
+					bounds[nBounds++] = r2;
+				}
+			}
+		} else if (Math.abs(qb) > 1E-12 * scale) {
+			double r = -qc / qb;
+			if (r > 0 && r < 1) {
+				bounds[nBounds++] = r;
+			}
+		}
+		bounds[nBounds++] = 1;
+
+		int nRoots = 0;
+		double fPrev = d0;
+		for (int i = 1; i < nBounds; i++) {
+			double s0 = bounds[i - 1];
+			double s1 = bounds[i];
+			double f1 = (i == nBounds - 1) ? d3 : polyAt(a, b, c, d0, s1);
+			boolean positive0 = fPrev > 0;
+			if (positive0 != (f1 > 0)) {
+				// bisect the monotone piece keeping the sign change inside
+				double lo = s0, hi = s1;
+				for (int k = 0; k < MAX_BISECTION && hi - lo > MIN_PARAM_STEP; k++) {
+					double mid = 0.5 * (lo + hi);
+					if ((polyAt(a, b, c, d0, mid) > 0) == positive0) {
+						lo = mid;
+					} else {
+						hi = mid;
+					}
+				}
+				roots[nRoots++] = 0.5 * (lo + hi);
+			}
+			fPrev = f1;
+		}
+		return nRoots;
+	}
+
+	/**
+	 * Signed distance of a point to the line, positive on the left hand side
+	 * of the direction
+	 */
+	public static double signedDistance(double x, double y, double ox,
+			double oy, double ux, double uy) {
+		return (x - ox) * uy - (y - oy) * ux;
+	}
+
+	/**
+	 * Evaluate one coordinate of a cubic Bezier curve
+	 */
+	public static double cubicAt(double p0, double p1, double p2, double p3,
+			double s) {
+		double r = 1 - s;
+		return r * r * r * p0 + 3 * r * r * s * p1 + 3 * r * s * s * p2 + s
+				* s * s * p3;
+	}
+
+	private static double polyAt(double a, double b, double c, double d,
+			double s) {
+		return ((a * s + b) * s + c) * s + d;
+	}
+}
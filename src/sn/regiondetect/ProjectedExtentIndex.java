@@ -0,0 +1,119 @@
+package sn.regiondetect;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Index of the regions each line of a family of parallel sensor lines can
+ * hit.
+ *
+ * The extent of every region is projected onto the normal of the lines,
+ * from the corners of its bounding box, which gives the range of lines
+ * whose offset falls in the projected span. The regions are then bucketed by
+ * line, in region order, so a line only visits the regions it may
+ * intersect.
+ *
+ * @author
+ *
+ */
+public class ProjectedExtentIndex {
+
+	// projected span of each region along the normal of the lines
+	private double[] _minOffsets;
+	private double[] _maxOffsets;
+
+	// regions of line i are _regions[_lineStart[i]] to
+	// _regions[_lineStart[i + 1] - 1]
+	private int[] _lineStart;
+	private int[] _regions;
+
+	/**
+	 * Constructor
+	 *
+	 * @param regions
+	 * @param lines
+	 */
+	public ProjectedExtentIndex(Region[] regions, ParallelLines lines) {
+		int nLines = lines.getCount();
+		_minOffsets = new double[regions.length];
+		_maxOffsets = new double[regions.length];
+		int[] first = new int[regions.length];
+		int[] last = new int[regions.length];
+
+		// count the regions of each line
+		_lineStart = new int[nLines + 1];
+		for (int r = 0; r < regions.length; r++) {
+			// the bounding box of the control points contains the region
+			Rectangle2D bounds = regions[r].getShape().getBounds2D();
+			double o0 = lines.getOffset(bounds.getMinX(), bounds.getMinY());
+			double o1 = lines.getOffset(bounds.getMaxX(), bounds.getMinY());
+			double o2 = lines.getOffset(bounds.getMinX(), bounds.getMaxY());
+			double o3 = lines.getOffset(bounds.getMaxX(), bounds.getMaxY());
+			_minOffsets[r] = Math.min(Math.min(o0, o1), Math.min(o2, o3));
+			_maxOffsets[r] = Math.max(Math.max(o0, o1), Math.max(o2, o3));
+
+			first[r] = Math.max(0, lines.getFirstIndex(_minOffsets[r]));
+			last[r] = Math.min(nLines - 1,
+					lines.getLastIndex(_maxOffsets[r]));
+			for (int i = first[r]; i <= last[r]; i++) {
+				_lineStart[i + 1]++;
+			}
+		}
+		for (int i = 0; i < nLines; i++) {
+			_lineStart[i + 1] += _lineStart[i];
+		}
+
+		// fill the buckets in region order
+		_regions = new int[_lineStart[nLines]];
+		int[] next = new int[nLines];
+		System.arraycopy(_lineStart, 0, next, 0, nLines);
+		for (int r = 0; r < regions.length; r++) {
+			for (int i = first[r]; i <= last[r]; i++) {
+				_regions[next[i]++] = r;
+			}
+		}
+	}
+
+	/**
+	 * smallest offset of a region along the normal of the lines
+	 *
+	 * @param region
+	 * @return
+	 */
+	public double getMinOffset(int region) {
+		return _minOffsets[region];
+	}
+
+	/**
+	 * largest offset of a region along the normal of the lines
+	 *
+	 * @param region
+	 * @return
+	 */
+	public double getMaxOffset(int region) {
+		return _maxOffsets[region];
+	}
+
+	/**
+	 * number of regions a line may intersect
+	 *
+	 * @param line
+	 *            index of the line, starting from 0
+	 * @return
+	 */
+	public int getRegionCount(int line) {
+		return _lineStart[line + 1] - _lineStart[line];
+	}
+
+	/**
+	 * a region a line may intersect
+	 *
+	 * @param line
+	 *            index of the line, starting from 0
+	 * @param k
+	 *            from 0 to getRegionCount(line) - 1, in region order
+	 * @return index of the region
+	 */
+	public int getRegion(int line, int k) {
+		return _regions[_lineStart[line] + k];
+	}
+}
@@ -3,7 +3,9 @@ package sn.regiondetect;
 import java.awt.Point;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 //A simple region or hole
@@ -19,6 +21,25 @@ public class Region{
 	private List<Point> _pts;
 	private Path2D _path;
 	
+	// flattened outline of the last flatness asked for, replaced as a whole
+	// so a thread never reads the arrays of two different flatnesses
+	private volatile FlatOutline _flat;
+	
+	// the outline flattened at one flatness
+	private static class FlatOutline{
+		private final double _flatness;
+		private final double[] _x;
+		private final double[] _y;
+		private final int[] _rings; // start of each closed ring, and the end
+		
+		private FlatOutline(double flatness, double[] x, double[] y, int[] rings){
+			_flatness = flatness;
+			_x = x;
+			_y = y;
+			_rings = rings;
+		}
+	}
+	
 	public Region(int[] x, int[] y, int radius, int layer ,Point centre, boolean exceed){
 
 		_next = null;
@@ -54,6 +75,44 @@ public class Region{
 	}
 	
 	
+	/**
+	 * a copy of the region moved by an offset
+	 * @param dx
+	 * @param dy
+	 * @return
+	 */
+	public Region translate(int dx, int dy){
+		int[] x = new int[_xArray.length];
+		int[] y = new int[_yArray.length];
+		for(int i = 0; i < x.length; i++){
+			x[i] = _xArray[i] + dx;
+			y[i] = _yArray[i] + dy;
+		}
+		Point centre = _centre == null ? null : new Point(_centre.x + dx, _centre.y + dy);
+		return new Region(x, y, _radius, _layer, centre, _exceedBoundary);
+	}
+	
+	/**
+	 * a copy of the region scaled about a point
+	 * @param factor
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public Region scale(double factor, double cx, double cy){
+		int[] x = new int[_xArray.length];
+		int[] y = new int[_yArray.length];
+		for(int i = 0; i < x.length; i++){
+			x[i] = (int) Math.round(cx + (_xArray[i] - cx) * factor);
+			y[i] = (int) Math.round(cy + (_yArray[i] - cy) * factor);
+		}
+		Point centre = _centre == null ? null : new Point(
+				(int) Math.round(cx + (_centre.x - cx) * factor),
+				(int) Math.round(cy + (_centre.y - cy) * factor));
+		int radius = _radius < 0 ? _radius : (int) Math.round(_radius * factor);
+		return new Region(x, y, radius, _layer, centre, _exceedBoundary);
+	}
+	
 	public boolean isHole(){
 		if(_layer%2 == 0)
 			return false;
@@ -104,6 +163,92 @@ public class Region{
 		return _path;
 	}
 	
+	/**
+	 * x coordinates of the flattened outline, the curves of the shape
+	 * replaced by lines. The arrays are shared, do not modify them.
+	 * @param flatness maximum distance of the lines from the curves, in pixels
+	 * @return
+	 */
+	public double[] getFlattenedX(double flatness){
+		return flatten(flatness)._x;
+	}
+	
+	public double[] getFlattenedY(double flatness){
+		return flatten(flatness)._y;
+	}
+	
+	/**
+	 * start index of each closed ring of the flattened outline in the
+	 * coordinate arrays, followed by the number of points
+	 * @param flatness maximum distance of the lines from the curves, in pixels
+	 * @return
+	 */
+	public int[] getFlattenedRings(double flatness){
+		return flatten(flatness)._rings;
+	}
+	
+	/**
+	 * test if a point is inside the flattened outline, even-odd rule
+	 * @param x
+	 * @param y
+	 * @param flatness maximum distance of the lines from the curves, in pixels
+	 * @return
+	 */
+	public boolean containsFlattened(double x, double y, double flatness){
+		FlatOutline flat = flatten(flatness);
+		double[] xs = flat._x, ys = flat._y;
+		boolean inside = false;
+		for(int r = 0; r < flat._rings.length - 1; r++){
+			int start = flat._rings[r], end = flat._rings[r + 1];
+			for(int i = start, j = end - 1; i < end; j = i++){
+				if((ys[i] > y) != (ys[j] > y)
+						&& x < xs[j] + (y - ys[j]) * (xs[i] - xs[j]) / (ys[i] - ys[j])){
+					inside = !inside;
+				}
+			}
+		}
+		return inside;
+	}
+	
+	private FlatOutline flatten(double flatness){
+		FlatOutline flat = _flat;
+		if(flat != null && flat._flatness == flatness){
+			return flat;
+		}
+		
+		double[] xs = new double[64];
+		double[] ys = new double[64];
+		int[] rings = new int[4];
+		int n = 0, nRings = 0;
+		double[] coords = new double[6];
+		PathIterator it = _path.getPathIterator(null, flatness);
+		while(!it.isDone()){
+			int type = it.currentSegment(coords);
+			if(type == PathIterator.SEG_MOVETO){
+				if(nRings + 1 >= rings.length){
+					rings = Arrays.copyOf(rings, rings.length * 2);
+				}
+				rings[nRings++] = n;
+			}
+			if(type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO){
+				if(n == xs.length){
+					xs = Arrays.copyOf(xs, n * 2);
+					ys = Arrays.copyOf(ys, n * 2);
+				}
+				xs[n] = coords[0];
+				ys[n] = coords[1];
+				n++;
+			}
+			it.next();
+		}
+		rings[nRings] = n;
+		
+		flat = new FlatOutline(flatness, Arrays.copyOf(xs, n),
+				Arrays.copyOf(ys, n), Arrays.copyOf(rings, nRings + 1));
+		_flat = flat;
+		return flat;
+	}
+	
 	@Override
 	public String toString(){
 		String regionInfo = "";
@@ -0,0 +1,281 @@
+package sn.regiondetect;
+
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * The edges of a set of regions, decoded once from their paths so they can
+ * be intersected with any number of sensor line families.
+ *
+ * Every edge is either a straight line or a cubic curve, quadratic curves are
+ * elevated to cubic ones and open subpaths are closed. An edge is kept as 8
+ * coordinates (x0, y0, x1, y1, x2, y2, x3, y3); a straight line only uses the
+ * first and last point. The bounding box, layer and hole flag of each region
+ * are kept alongside. None of this depends on the angle of the sensor lines.
+ *
+ * @author
+ *
+ */
+public class RegionEdges {
+
+	// region data
+	private int _nRegions;
+	private int[] _layers;
+	private boolean[] _holes;
+	private double[] _bounds; // minX, minY, maxX, maxY of each region
+	private int[] _firstEdge; // first edge of each region, and the end
+
+	// edge data
+	private int[] _types; // PathIterator.SEG_LINETO or SEG_CUBICTO
+	private double[] _coords;
+	private int _nEdges;
+
+	/**
+	 * Constructor
+	 *
+	 * @param regions
+	 *            regions in layer order
+	 * @throws Exception
+	 */
+	public RegionEdges(Region[] regions) throws Exception {
+		_nRegions = regions.length;
+		_layers = new int[_nRegions];
+		_holes = new boolean[_nRegions];
+		_bounds = new double[_nRegions * 4];
+		_firstEdge = new int[_nRegions + 1];
+		_types = new int[64];
+		_coords = new double[64 * 8];
+		_nEdges = 0;
+
+		for (int r = 0; r < _nRegions; r++) {
+			_layers[r] = regions[r].getLayer();
+			_holes[r] = regions[r].isHole();
+			_firstEdge[r] = _nEdges;
+			addPath(regions[r].getShape());
+			_firstEdge[r + 1] = _nEdges;
+			computeBounds(r);
+		}
+	}
+
+	public int getRegionCount() {
+		return _nRegions;
+	}
+
+	public int getLayer(int region) {
+		return _layers[region];
+	}
+
+	public boolean isHole(int region) {
+		return _holes[region];
+	}
+
+	public double getMinX(int region) {
+		return _bounds[region * 4];
+	}
+
+	public double getMinY(int region) {
+		return _bounds[region * 4 + 1];
+	}
+
+	public double getMaxX(int region) {
+		return _bounds[region * 4 + 2];
+	}
+
+	public double getMaxY(int region) {
+		return _bounds[region * 4 + 3];
+	}
+
+	/**
+	 * index of the first edge of a region
+	 *
+	 * @param region
+	 * @return
+	 */
+	public int getFirstEdge(int region) {
+		return _firstEdge[region];
+	}
+
+	/**
+	 * index after the last edge of a region
+	 *
+	 * @param region
+	 * @return
+	 */
+	public int getEndEdge(int region) {
+		return _firstEdge[region + 1];
+	}
+
+	public int getEdgeCount() {
+		return _nEdges;
+	}
+
+	/**
+	 * test if an edge is a cubic curve
+	 *
+	 * @param edge
+	 * @return false if the edge is a straight line
+	 */
+	public boolean isCubic(int edge) {
+		return _types[edge] == PathIterator.SEG_CUBICTO;
+	}
+
+	/**
+	 * coordinate k (0 to 7) of an edge, x0, y0, x1, y1, x2, y2, x3, y3
+	 *
+	 * @param edge
+	 * @param k
+	 * @return
+	 */
+	public double getCoord(int edge, int k) {
+		return _coords[edge * 8 + k];
+	}
+
+	/**
+	 * an edge as straight lines, a SEG_MOVETO to its start followed by a
+	 * SEG_LINETO to the end of each line. A cubic curve is flattened so that
+	 * no point of it is further than <code>flatness</code> from the lines, a
+	 * straight line is returned as it is.
+	 *
+	 * @param edge
+	 * @param flatness
+	 * @return
+	 */
+	public PathIterator getFlattenedEdge(int edge, double flatness) {
+		int k = edge * 8;
+		if (!isCubic(edge)) {
+			return new Line2D.Double(_coords[k], _coords[k + 1],
+					_coords[k + 6], _coords[k + 7]).getPathIterator(null);
+		}
+		return new CubicCurve2D.Double(_coords[k], _coords[k + 1],
+				_coords[k + 2], _coords[k + 3], _coords[k + 4],
+				_coords[k + 5], _coords[k + 6], _coords[k + 7])
+				.getPathIterator(null, flatness);
+	}
+
+	/**
+	 * decode the edges of a path
+	 *
+	 * @param path
+	 * @throws Exception
+	 */
+	private void addPath(Path2D path) throws Exception {
+		double[] coords = new double[6];
+		double startX = 0, startY = 0, curX = 0, curY = 0;
+		boolean hasStart = false;
+
+		PathIterator it = path.getPathIterator(null);
+		while (!it.isDone()) {
+			int type = it.currentSegment(coords);
+			switch (type) {
+			case PathIterator.SEG_MOVETO: {
+				if (hasStart && (curX != startX || curY != startY)) {
+					addLine(curX, curY, startX, startY);
+				}
+				startX = coords[0];
+				startY = coords[1];
+				curX = startX;
+				curY = startY;
+				hasStart = true;
+				break;
+			}
+
+			case PathIterator.SEG_LINETO: {
+				addLine(curX, curY, coords[0], coords[1]);
+				curX = coords[0];
+				curY = coords[1];
+				break;
+			}
+
+			case PathIterator.SEG_QUADTO: {
+				double x1 = curX + 2.0 / 3.0 * (coords[0] - curX);
+				double y1 = curY + 2.0 / 3.0 * (coords[1] - curY);
+				double x2 = coords[2] + 2.0 / 3.0 * (coords[0] - coords[2]);
+				double y2 = coords[3] + 2.0 / 3.0 * (coords[1] - coords[3]);
+				addCubic(curX, curY, x1, y1, x2, y2, coords[2], coords[3]);
+				curX = coords[2];
+				curY = coords[3];
+				break;
+			}
+
+			case PathIterator.SEG_CUBICTO: {
+				addCubic(curX, curY, coords[0], coords[1], coords[2],
+						coords[3], coords[4], coords[5]);
+				curX = coords[4];
+				curY = coords[5];
+				break;
+			}
+
+			case PathIterator.SEG_CLOSE: {
+				if (curX != startX || curY != startY) {
+					addLine(curX, curY, startX, startY);
+				}
+				curX = startX;
+				curY = startY;
+				break;
+			}
+			default: {
+				throw new Exception("Unsupported PathIterator segment type: "
+						+ type);
+			}
+			}
+			it.next();
+		}
+
+		if (hasStart && (curX != startX || curY != startY)) {
+			addLine(curX, curY, startX, startY);
+		}
+	}
+
+	private void addLine(double x0, double y0, double x1, double y1) {
+		addEdge(PathIterator.SEG_LINETO, x0, y0, x0, y0, x1, y1, x1, y1);
+	}
+
+	private void addCubic(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x3, double y3) {
+		addEdge(PathIterator.SEG_CUBICTO, x0, y0, x1, y1, x2, y2, x3, y3);
+	}
+
+	private void addEdge(int type, double x0, double y0, double x1,
+			double y1, double x2, double y2, double x3, double y3) {
+		if (_nEdges == _types.length) {
+			int capacity = _nEdges * 2;
+			_types = Arrays.copyOf(_types, capacity);
+			_coords = Arrays.copyOf(_coords, capacity * 8);
+		}
+		_types[_nEdges] = type;
+		int k = _nEdges * 8;
+		_coords[k] = x0;
+		_coords[k + 1] = y0;
+		_coords[k + 2] = x1;
+		_coords[k + 3] = y1;
+		_coords[k + 4] = x2;
+		_coords[k + 5] = y2;
+		_coords[k + 6] = x3;
+		_coords[k + 7] = y3;
+		_nEdges++;
+	}
+
+	/**
+	 * bounding box of the control points of the edges of a region, which
+	 * contains the region
+	 *
+	 * @param region
+	 */
+	private void computeBounds(int region) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int k = _firstEdge[region] * 8; k < _firstEdge[region + 1] * 8; k += 2) {
+			minX = Math.min(minX, _coords[k]);
+			minY = Math.min(minY, _coords[k + 1]);
+			maxX = Math.max(maxX, _coords[k]);
+			maxY = Math.max(maxY, _coords[k + 1]);
+		}
+		_bounds[region * 4] = minX;
+		_bounds[region * 4 + 1] = minY;
+		_bounds[region * 4 + 2] = maxX;
+		_bounds[region * 4 + 3] = maxY;
+	}
+}
@@ -0,0 +1,280 @@
+package sn.regiondetect;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import sn.recover.SensorData;
+
+/**
+ * A sequence of frames of a complex region whose sub-regions drift over
+ * time, with the sensor data of every frame.
+ *
+ * A region and the regions nested in it (linked by getPrev/getNext) form a
+ * family that moves together: each family has its own velocity and growth
+ * rate, and in each frame it moves with probability changeRate. Families
+ * that do not move keep their Region objects, and the sensor data of a
+ * frame is the data of the previous frame with only the lines touched by the
+ * moved regions recomputed, see SensorData.updateRegions.
+ *
+ * @author
+ *
+ */
+public class RegionScenario {
+
+	/**
+	 * One frame of the scenario
+	 */
+	public static class Frame {
+		private ComplexRegion _complexRegion;
+		private SensorData[] _sensorData;
+		private int _nChanged;
+
+		private Frame(ComplexRegion complexRegion, SensorData[] sensorData,
+				int nChanged) {
+			_complexRegion = complexRegion;
+			_sensorData = sensorData;
+			_nChanged = nChanged;
+		}
+
+		public ComplexRegion getComplexRegion() {
+			return _complexRegion;
+		}
+
+		/**
+		 * sensor data of the frame, one for each angle
+		 *
+		 * @return
+		 */
+		public SensorData[] getSensorData() {
+			return _sensorData;
+		}
+
+		/**
+		 * number of regions changed since the previous frame
+		 *
+		 * @return
+		 */
+		public int getChangedCount() {
+			return _nChanged;
+		}
+	}
+
+	private double[] _angles;
+	private int _width;
+	private int _height;
+	private Random _random;
+
+	// motion settings
+	private double _changeRate = 0.3;
+	private int _maxStep = 8;
+	private double _maxGrowth = 0.05;
+
+	// the family (index of its root region) of each region, and the motion
+	// of each family, as fractions from -1 to 1 of the largest step and
+	// growth
+	private int[] _family;
+	private double[] _dirX;
+	private double[] _dirY;
+	private double[] _growth;
+	private double[] _scale;
+
+	private Frame _current;
+
+	/**
+	 * Constructor, the complex region is the first frame
+	 *
+	 * @param complexRegion
+	 * @param gap
+	 * @param angles
+	 *            angles of the sensor sets
+	 * @throws Exception
+	 */
+	public RegionScenario(ComplexRegion complexRegion, double gap,
+			double[] angles) throws Exception {
+		_angles = angles;
+		_width = complexRegion.getWidth();
+		_height = complexRegion.getHeight();
+		_random = new Random();
+
+		Region[] regions = complexRegion.getComplexRegion();
+		initFamilies(regions);
+
+		SensorData[] sensorData = new SensorData[angles.length];
+		for (int i = 0; i < angles.length; i++) {
+			sensorData[i] = new SensorData(complexRegion, gap, angles[i],
+					_width, _height, SensorData.BUILD_PER_LINE);
+		}
+		_current = new Frame(complexRegion, sensorData, 0);
+	}
+
+	/**
+	 * set the probability of a family moving in a frame
+	 *
+	 * @param changeRate
+	 */
+	public void setChangeRate(double changeRate) {
+		_changeRate = changeRate;
+	}
+
+	/**
+	 * set the largest translation of a family in a frame, in pixels
+	 *
+	 * @param maxStep
+	 */
+	public void setMaxStep(int maxStep) {
+		_maxStep = maxStep;
+	}
+
+	/**
+	 * set the largest relative growth or shrink of a family in a frame
+	 *
+	 * @param maxGrowth
+	 */
+	public void setMaxGrowth(double maxGrowth) {
+		_maxGrowth = maxGrowth;
+	}
+
+	public Frame getCurrentFrame() {
+		return _current;
+	}
+
+	/**
+	 * generate a sequence of frames, starting with the current one
+	 *
+	 * @param nFrames
+	 * @return
+	 * @throws Exception
+	 */
+	public List<Frame> generate(int nFrames) throws Exception {
+		List<Frame> frames = new ArrayList<Frame>();
+		if (nFrames > 0) {
+			frames.add(_current);
+		}
+		for (int f = 1; f < nFrames; f++) {
+			frames.add(nextFrame());
+		}
+		return frames;
+	}
+
+	/**
+	 * move the families for one frame
+	 *
+	 * @return the new frame
+	 * @throws Exception
+	 */
+	public Frame nextFrame() throws Exception {
+		Region[] prevRegions = _current.getComplexRegion().getComplexRegion();
+		Region[] regions = prevRegions.clone();
+
+		// decide which families move and how
+		boolean[] moves = new boolean[regions.length];
+		int[] dx = new int[regions.length];
+		int[] dy = new int[regions.length];
+		double[] factor = new double[regions.length];
+		double[] cx = new double[regions.length];
+		double[] cy = new double[regions.length];
+		for (int r = 0; r < regions.length; r++) {
+			if (_family[r] != r || _random.nextDouble() >= _changeRate) {
+				continue;
+			}
+			moves[r] = true;
+
+			// bounce off the canvas borders and the size limits
+			Rectangle2D bounds = regions[r].getShape().getBounds2D();
+			dx[r] = (int) Math.round(_dirX[r] * _maxStep);
+			dy[r] = (int) Math.round(_dirY[r] * _maxStep);
+			if (bounds.getMinX() + dx[r] < 0
+					|| bounds.getMaxX() + dx[r] > _width) {
+				_dirX[r] = -_dirX[r];
+				dx[r] = -dx[r];
+			}
+			if (bounds.getMinY() + dy[r] < 0
+					|| bounds.getMaxY() + dy[r] > _height) {
+				_dirY[r] = -_dirY[r];
+				dy[r] = -dy[r];
+			}
+			factor[r] = 1 + _growth[r] * _maxGrowth;
+			if (_scale[r] * factor[r] > 1.5 || _scale[r] * factor[r] < 0.6) {
+				_growth[r] = -_growth[r];
+				factor[r] = 1 + _growth[r] * _maxGrowth;
+			}
+			_scale[r] *= factor[r];
+			cx[r] = bounds.getCenterX();
+			cy[r] = bounds.getCenterY();
+		}
+
+		List<Region> oldChanged = new ArrayList<Region>();
+		List<Region> newChanged = new ArrayList<Region>();
+		Map<Region, Region> moved = new IdentityHashMap<Region, Region>();
+		for (int r = 0; r < regions.length; r++) {
+			int root = _family[r];
+			if (!moves[root]) {
+				continue;
+			}
+			regions[r] = prevRegions[r].scale(factor[root], cx[root],
+					cy[root]).translate(dx[root], dy[root]);
+			moved.put(prevRegions[r], regions[r]);
+			oldChanged.add(prevRegions[r]);
+			newChanged.add(regions[r]);
+		}
+
+		// keep the nesting links within moved families
+		for (Map.Entry<Region, Region> e : moved.entrySet()) {
+			Region prev = e.getKey().getPrev();
+			Region next = e.getKey().getNext();
+			e.getValue().setPrev(prev == null ? null : moved.get(prev));
+			e.getValue().setNext(next == null ? null : moved.get(next));
+		}
+
+		ComplexRegion complexRegion = new ComplexRegion(regions, _width,
+				_height);
+		SensorData[] sensorData = _current.getSensorData();
+		if (!oldChanged.isEmpty()) {
+			sensorData = new SensorData[_angles.length];
+			Region[] oldArray = oldChanged.toArray(new Region[0]);
+			Region[] newArray = newChanged.toArray(new Region[0]);
+			for (int i = 0; i < _angles.length; i++) {
+				sensorData[i] = new SensorData(_current.getSensorData()[i]);
+				sensorData[i].updateRegions(regions, oldArray, newArray);
+			}
+		}
+
+		_current = new Frame(complexRegion, sensorData, oldChanged.size());
+		return _current;
+	}
+
+	/**
+	 * group the regions into families by their root region and pick a
+	 * motion for each family
+	 *
+	 * @param regions
+	 */
+	private void initFamilies(Region[] regions) {
+		Map<Region, Integer> indices = new IdentityHashMap<Region, Integer>();
+		for (int r = 0; r < regions.length; r++) {
+			indices.put(regions[r], r);
+		}
+
+		_family = new int[regions.length];
+		_dirX = new double[regions.length];
+		_dirY = new double[regions.length];
+		_growth = new double[regions.length];
+		_scale = new double[regions.length];
+		for (int r = 0; r < regions.length; r++) {
+			Region root = regions[r];
+			while (root.getPrev() != null && indices.containsKey(root.getPrev())) {
+				root = root.getPrev();
+			}
+			_family[r] = indices.get(root);
+
+			_dirX[r] = _random.nextDouble() * 2 - 1;
+			_dirY[r] = _random.nextDouble() * 2 - 1;
+			_growth[r] = _random.nextDouble() * 2 - 1;
+			_scale[r] = 1;
+		}
+	}
+}